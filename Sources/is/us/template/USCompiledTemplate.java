@@ -0,0 +1,196 @@
+package is.us.template;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The parsed form of a template string using the ${variableName} syntax of USTemplateSimple.
+ * 
+ * The template is split once into literal segments and variable slots, so rendering is a single pass
+ * into a presized buffer, regardless of the number of variables in the template.
+ * 
+ * Instances are immutable and can be shared between threads and USTemplate instances.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USCompiledTemplate compiled = USCompiledTemplate.compile( "Halló ${nafn}" );
+ * 		String result = compiled.render( variables );
+ * </code>
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public final class USCompiledTemplate {
+
+	private static final String VARIABLE_START = "${";
+	private static final char VARIABLE_END = '}';
+
+	/**
+	 * The template string this template was compiled from.
+	 */
+	private final String _templateString;
+
+	/**
+	 * Literal segments of the template. There is always one more literal than there are variable slots.
+	 */
+	private final String[] _literals;
+
+	/**
+	 * Names of the variables in the template, in the order they appear.
+	 */
+	private final String[] _variableNames;
+
+	/**
+	 * Combined length of all literal segments, used for presizing the output buffer.
+	 */
+	private final int _literalLength;
+
+	private USCompiledTemplate( String templateString, String[] literals, String[] variableNames ) {
+		_templateString = templateString;
+		_literals = literals;
+		_variableNames = variableNames;
+
+		int length = 0;
+
+		for( String literal : literals ) {
+			length += literal.length();
+		}
+
+		_literalLength = length;
+	}
+
+	/**
+	 * Compiles the given template string.
+	 * 
+	 * @param templateString The template to compile.
+	 * @return The compiled template.
+	 */
+	public static USCompiledTemplate compile( String templateString ) {
+
+		if( templateString == null ) {
+			throw new IllegalArgumentException( "Can't compile a null template string" );
+		}
+
+		List<String> literals = new ArrayList<String>();
+		List<String> variableNames = new ArrayList<String>();
+
+		int literalStart = 0;
+		int variableStart = templateString.indexOf( VARIABLE_START );
+
+		while( variableStart != -1 ) {
+			int variableEnd = templateString.indexOf( VARIABLE_END, variableStart + VARIABLE_START.length() );
+
+			if( variableEnd == -1 ) {
+				break;
+			}
+
+			int nextVariableStart = templateString.indexOf( VARIABLE_START, variableStart + VARIABLE_START.length() );
+
+			if( nextVariableStart != -1 && nextVariableStart < variableEnd ) {
+				variableStart = nextVariableStart;
+				continue;
+			}
+
+			literals.add( templateString.substring( literalStart, variableStart ) );
+			variableNames.add( templateString.substring( variableStart + VARIABLE_START.length(), variableEnd ) );
+			literalStart = variableEnd + 1;
+			variableStart = templateString.indexOf( VARIABLE_START, literalStart );
+		}
+
+		literals.add( templateString.substring( literalStart ) );
+
+		return new USCompiledTemplate( templateString, literals.toArray( new String[literals.size()] ), variableNames.toArray( new String[variableNames.size()] ) );
+	}
+
+	/**
+	 * The template string this template was compiled from.
+	 */
+	public String templateString() {
+		return _templateString;
+	}
+
+	/**
+	 * Names of the variables in the template, in the order they appear. A variable used more than once appears more than once.
+	 */
+	public List<String> variableNames() {
+		return Collections.unmodifiableList( Arrays.asList( _variableNames ) );
+	}
+
+	/**
+	 * Renders the template using the given variables.
+	 * 
+	 * Variables that are present in the map but have a null value are rendered as an empty string.
+	 * Variables that are not present in the map are left in the output as they are.
+	 * 
+	 * @param variables The variables to use for rendering.
+	 * @return The rendered template.
+	 */
+	public String render( Map<String, ?> variables ) {
+
+		if( _variableNames.length == 0 ) {
+			return _templateString;
+		}
+
+		String[] values = new String[_variableNames.length];
+		int length = _literalLength;
+
+		for( int i = 0; i < _variableNames.length; i++ ) {
+			values[i] = valueForVariable( variables, _variableNames[i] );
+			length += values[i].length();
+		}
+
+		StringBuilder b = new StringBuilder( length );
+
+		for( int i = 0; i < values.length; i++ ) {
+			b.append( _literals[i] );
+			b.append( values[i] );
+		}
+
+		b.append( _literals[values.length] );
+
+		return b.toString();
+	}
+
+	/**
+	 * Renders the template using the given variables, writing the result directly to the given Appendable (for example a Writer).
+	 * 
+	 * No copy of the complete rendered template is created, each literal segment and variable value is appended as it is reached.
+	 * 
+	 * @param variables The variables to use for rendering.
+	 * @param out The destination to write the rendered template to.
+	 * @throws IOException if writing to the destination fails.
+	 */
+	public void render( Map<String, ?> variables, Appendable out ) throws IOException {
+
+		for( int i = 0; i < _variableNames.length; i++ ) {
+			out.append( _literals[i] );
+			out.append( valueForVariable( variables, _variableNames[i] ) );
+		}
+
+		out.append( _literals[_variableNames.length] );
+	}
+
+	/**
+	 * @return The string to render in place of the given variable.
+	 */
+	private static String valueForVariable( Map<String, ?> variables, String name ) {
+
+		if( variables == null || !variables.containsKey( name ) ) {
+			return VARIABLE_START + name + VARIABLE_END;
+		}
+
+		Object value = variables.get( name );
+
+		if( value == null ) {
+			return "";
+		}
+
+		return value.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + ": " + _templateString;
+	}
+}
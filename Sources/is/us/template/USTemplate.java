@@ -1,5 +1,6 @@
 package is.us.template;
 
+import java.io.*;
 import java.util.*;
 
 /**
@@ -23,6 +24,9 @@ import java.util.*;
  * 
  * Will generate the result "Halló Hugi".
  * 
+ * Large templates can be rendered directly to a Writer or an OutputStream using "parse( Appendable )"
+ * or "parse( OutputStream, String )", avoiding creation of the entire rendered template in memory.
+ * 
  * WARNING! Template syntax is variable between implementations! See documentation for each subclass for information on each class' template syntax.
  * 
  * @author Hugi Þórðarson
@@ -32,6 +36,11 @@ import java.util.*;
 
 public abstract class USTemplate {
 
+	/**
+	 * Name of our default encoding.
+	 */
+	private static final String UTF_8 = "UTF-8";
+
 	private Map<String, Object> _variables;
 	private String _templateString;
 
@@ -111,4 +120,39 @@ public abstract class USTemplate {
 	 * Performs rendering of the template.
 	 */
 	public abstract String parse();
+
+	/**
+	 * Performs rendering of the template, writing the result to the given destination.
+	 * 
+	 * The default implementation appends the result of "parse()", subclasses should override it to write without creating the entire result as a string.
+	 * 
+	 * @param out The destination to write the rendered template to, for example a Writer.
+	 * @throws IOException if writing to the destination fails.
+	 */
+	public void parse( Appendable out ) throws IOException {
+		String result = parse();
+
+		if( result != null ) {
+			out.append( result );
+		}
+	}
+
+	/**
+	 * Performs rendering of the template, writing the result to the given stream using the given encoding.
+	 * The stream is flushed, but not closed.
+	 * 
+	 * @param out The stream to write the rendered template to.
+	 * @param encoding The encoding to use, if null UTF-8 is used.
+	 * @throws IOException if writing to the stream fails.
+	 */
+	public void parse( OutputStream out, String encoding ) throws IOException {
+
+		if( encoding == null ) {
+			encoding = UTF_8;
+		}
+
+		Writer writer = new OutputStreamWriter( out, encoding );
+		parse( writer );
+		writer.flush();
+	}
 }
\ No newline at end of file
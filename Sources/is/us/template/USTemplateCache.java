@@ -0,0 +1,354 @@
+package is.us.template;
+
+import is.us.util.USStringUtilities;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache of compiled templates.
+ * 
+ * Templates are keyed either by their source string or by the file they were loaded from.
+ * The cache is bounded both by the number of templates and by their combined length in characters,
+ * so large templates don't stay in memory indefinitely. When either bound is exceeded, the least recently used templates are evicted.
+ * A template longer than the maximum combined length is compiled but not cached.
+ * Templates loaded from files are reloaded if the file's modification date or length changes, or if it's requested with another encoding.
+ * 
+ * Lookups don't lock the cache, so threads rendering templates don't wait for each other.
+ * Each entry records when it was last used, and the least recently used entries are found when evicting, which only happens when a template is added.
+ * 
+ * The cache keeps count of hits, misses and evictions to help with sizing it.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USCompiledTemplate compiled = USTemplateCache.sharedCache().templateFromFile( file, "UTF-8" );
+ * 		USTemplate template = new USTemplateSimple( compiled );
+ * </code>
+ * 
+ * All methods are thread safe.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USTemplateCache {
+
+	/**
+	 * Maximum number of templates in the shared cache.
+	 */
+	private static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	/**
+	 * Maximum combined length of the templates in the shared cache, in characters.
+	 */
+	private static final int DEFAULT_MAXIMUM_LENGTH = 4 * 1024 * 1024;
+
+	/**
+	 * Name of our default encoding.
+	 */
+	private static final String UTF_8 = "UTF-8";
+
+	/**
+	 * The cache used by USTemplateSimple.
+	 */
+	private static final USTemplateCache _sharedCache = new USTemplateCache( DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_LENGTH );
+
+	/**
+	 * Maximum number of templates kept in the cache.
+	 */
+	private final int _maximumSize;
+
+	/**
+	 * Maximum combined length of the templates kept in the cache, in characters.
+	 */
+	private final int _maximumLength;
+
+	/**
+	 * Combined length of the templates currently in the cache, in characters. Guarded by the cache's lock.
+	 */
+	private long _length;
+
+	/**
+	 * The cached templates. Keys are either template strings or files. Entries are only added and removed while holding the cache's lock.
+	 */
+	private final ConcurrentHashMap<Object, Entry> _entries = new ConcurrentHashMap<Object, Entry>();
+
+	/**
+	 * Incremented on each use of an entry, giving the order in which entries were last used.
+	 */
+	private final AtomicLong _clock = new AtomicLong();
+
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+
+	/**
+	 * Constructs a new cache, bounded only by the number of templates.
+	 * 
+	 * @param maximumSize The maximum number of templates to keep in the cache.
+	 */
+	public USTemplateCache( int maximumSize ) {
+		this( maximumSize, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Constructs a new cache.
+	 * 
+	 * @param maximumSize The maximum number of templates to keep in the cache.
+	 * @param maximumLength The maximum combined length of the templates kept in the cache, in characters.
+	 */
+	public USTemplateCache( int maximumSize, int maximumLength ) {
+
+		if( maximumSize < 1 ) {
+			throw new IllegalArgumentException( "The maximum size of a template cache must be at least 1" );
+		}
+
+		if( maximumLength < 1 ) {
+			throw new IllegalArgumentException( "The maximum length of a template cache must be at least 1" );
+		}
+
+		_maximumSize = maximumSize;
+		_maximumLength = maximumLength;
+	}
+
+	/**
+	 * The cache shared by all USTemplateSimple instances.
+	 */
+	public static USTemplateCache sharedCache() {
+		return _sharedCache;
+	}
+
+	/**
+	 * @return The compiled template for the given template string, compiled and cached if not already present.
+	 */
+	public USCompiledTemplate templateWithString( String templateString ) {
+
+		if( templateString == null ) {
+			return null;
+		}
+
+		Entry entry = _entries.get( templateString );
+
+		if( entry != null ) {
+			_hits.incrementAndGet();
+			entry.lastUsed = _clock.incrementAndGet();
+			return entry.template;
+		}
+
+		_misses.incrementAndGet();
+		USCompiledTemplate template = USCompiledTemplate.compile( templateString );
+		put( templateString, new Entry( template, null, 0, 0 ) );
+		return template;
+	}
+
+	/**
+	 * Returns the compiled template for the given file.
+	 * If the file has been modified since it was cached, or was cached using another encoding, it is read and compiled again.
+	 * 
+	 * @param file The file to read the template from.
+	 * @param encoding The encoding of the file, if null UTF-8 is used.
+	 * @return The compiled template, or null if the file could not be read.
+	 */
+	public USCompiledTemplate templateFromFile( File file, String encoding ) {
+
+		if( file == null ) {
+			return null;
+		}
+
+		if( encoding == null ) {
+			encoding = UTF_8;
+		}
+
+		File key = file.getAbsoluteFile();
+		long lastModified = key.lastModified();
+		long length = key.length();
+
+		Entry entry = _entries.get( key );
+
+		if( entry != null && entry.lastModified == lastModified && entry.length == length && encoding.equals( entry.encoding ) ) {
+			_hits.incrementAndGet();
+			entry.lastUsed = _clock.incrementAndGet();
+			return entry.template;
+		}
+
+		_misses.incrementAndGet();
+
+		String templateString = USStringUtilities.readStringFromFileUsingEncoding( key, encoding );
+
+		if( templateString == null ) {
+			invalidate( key );
+			return null;
+		}
+
+		USCompiledTemplate template = USCompiledTemplate.compile( templateString );
+
+		put( key, new Entry( template, encoding, lastModified, length ) );
+		return template;
+	}
+
+	/**
+	 * Adds the given entry to the cache, replacing any entry with the same key, and evicts the least recently used entries if the cache is over either bound.
+	 * Entries longer than the maximum length of the cache are not added.
+	 */
+	private synchronized void put( Object key, Entry entry ) {
+		int entryLength = entry.template.templateString().length();
+
+		if( entryLength > _maximumLength ) {
+			remove( key );
+			return;
+		}
+
+		entry.lastUsed = _clock.incrementAndGet();
+		Entry previous = _entries.put( key, entry );
+		_length += entryLength;
+
+		if( previous != null ) {
+			_length -= previous.template.templateString().length();
+		}
+
+		while( _entries.size() > _maximumSize || _length > _maximumLength ) {
+			evictLeastRecentlyUsed();
+		}
+	}
+
+	/**
+	 * Removes the entry that was used least recently. Called while holding the cache's lock.
+	 */
+	private void evictLeastRecentlyUsed() {
+		Object eldestKey = null;
+		long eldestUse = Long.MAX_VALUE;
+
+		for( Map.Entry<Object, Entry> candidate : _entries.entrySet() ) {
+			if( candidate.getValue().lastUsed < eldestUse ) {
+				eldestKey = candidate.getKey();
+				eldestUse = candidate.getValue().lastUsed;
+			}
+		}
+
+		remove( eldestKey );
+		_evictions.incrementAndGet();
+	}
+
+	/**
+	 * Removes the entry with the given key from the cache.
+	 */
+	private synchronized void remove( Object key ) {
+		Entry entry = _entries.remove( key );
+
+		if( entry != null ) {
+			_length -= entry.template.templateString().length();
+		}
+	}
+
+	/**
+	 * Removes the template with the given template string from the cache.
+	 */
+	public synchronized void invalidate( String templateString ) {
+		remove( templateString );
+	}
+
+	/**
+	 * Removes the template loaded from the given file from the cache.
+	 */
+	public synchronized void invalidate( File file ) {
+
+		if( file != null ) {
+			remove( file.getAbsoluteFile() );
+		}
+	}
+
+	/**
+	 * Removes all templates from the cache. Statistics are not reset.
+	 */
+	public synchronized void clear() {
+		_entries.clear();
+		_length = 0;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters.
+	 */
+	public void resetStatistics() {
+		_hits.set( 0 );
+		_misses.set( 0 );
+		_evictions.set( 0 );
+	}
+
+	/**
+	 * The number of templates currently in the cache.
+	 */
+	public int size() {
+		return _entries.size();
+	}
+
+	/**
+	 * The maximum number of templates kept in the cache.
+	 */
+	public int maximumSize() {
+		return _maximumSize;
+	}
+
+	/**
+	 * The combined length of the templates currently in the cache, in characters.
+	 */
+	public synchronized long length() {
+		return _length;
+	}
+
+	/**
+	 * The maximum combined length of the templates kept in the cache, in characters.
+	 */
+	public int maximumLength() {
+		return _maximumLength;
+	}
+
+	/**
+	 * Number of lookups that found a valid template in the cache.
+	 */
+	public long hits() {
+		return _hits.get();
+	}
+
+	/**
+	 * Number of lookups that required a template to be compiled.
+	 */
+	public long misses() {
+		return _misses.get();
+	}
+
+	/**
+	 * Number of templates removed from the cache to make room for new ones.
+	 */
+	public long evictions() {
+		return _evictions.get();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + " - size: " + _entries.size() + "/" + _maximumSize + " - length: " + _length + "/" + _maximumLength + " - hits: " + _hits + " - misses: " + _misses + " - evictions: " + _evictions;
+	}
+
+	/**
+	 * A cached template, along with the encoding and state of the file it was read from (if any).
+	 */
+	private static class Entry {
+		final USCompiledTemplate template;
+		final String encoding;
+		final long lastModified;
+		final long length;
+
+		/**
+		 * Value of the cache's clock when the entry was last used.
+		 */
+		volatile long lastUsed;
+
+		Entry( USCompiledTemplate template, String encoding, long lastModified, long length ) {
+			this.template = template;
+			this.encoding = encoding;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package is.us.template;
 
-import is.us.util.USStringUtilities;
-
-import java.util.Set;
+import java.io.*;
 
 /**
  * A very simple template system
@@ -21,33 +19,100 @@ import java.util.Set;
  * 
  * Will return: The quick brown fox jumps over a lazy dog
  * 
+ * The template string is compiled once (see USCompiledTemplate) and the compiled form is kept in USTemplateCache.sharedCache(),
+ * so instances using the same template string (or template file) share the compiled form.
+ * 
  * @author Atli Páll Hafsteinsson
  * @reviewedBy Bjarni Sævarsson
  */
 
 public class USTemplateSimple extends USTemplate {
 
+	/**
+	 * The compiled form of the template string, created lazily.
+	 */
+	private USCompiledTemplate _compiledTemplate;
+
+	/**
+	 * Constructs a new, empty template.
+	 */
+	public USTemplateSimple() {}
+
+	/**
+	 * Constructs a new template using an already compiled template, allowing the compiled form to be shared between instances.
+	 * 
+	 * @param compiledTemplate The compiled template to use.
+	 */
+	public USTemplateSimple( USCompiledTemplate compiledTemplate ) {
+		setCompiledTemplate( compiledTemplate );
+	}
+
+	@Override
+	public void setTemplateString( String template ) {
+		super.setTemplateString( template );
+		_compiledTemplate = null;
+	}
+
+	/**
+	 * Sets the compiled template to use, along with it's template string.
+	 * 
+	 * @param compiledTemplate The compiled template to use.
+	 */
+	public void setCompiledTemplate( USCompiledTemplate compiledTemplate ) {
+		super.setTemplateString( (compiledTemplate != null) ? compiledTemplate.templateString() : null );
+		_compiledTemplate = compiledTemplate;
+	}
+
+	/**
+	 * Loads the template from the given file, through the shared template cache.
+	 * The file is only read again if it has been modified since it was last read.
+	 * 
+	 * @param file The file to read the template from.
+	 * @param encoding The encoding of the file, if null UTF-8 is used.
+	 */
+	public void setTemplateFile( File file, String encoding ) {
+		setCompiledTemplate( USTemplateCache.sharedCache().templateFromFile( file, encoding ) );
+	}
+
+	/**
+	 * @return The compiled form of the template string, or null if no template string has been set.
+	 */
+	public USCompiledTemplate compiledTemplate() {
+
+		if( _compiledTemplate == null && templateString() != null ) {
+			_compiledTemplate = USTemplateCache.sharedCache().templateWithString( templateString() );
+		}
+
+		return _compiledTemplate;
+	}
+
 	/**
 	 * Replaces all occurancies of template variables with the desired values.
 	 * If any of the values is null the template variable is removed.
 	 * 
 	 * @return the template with variables replaced with their values
 	 */
+	@Override
 	public String parse() {
-		String result = templateString();
-		Set<String> keys = variables().keySet();
-
-		for( String key : keys ) {
-			Object value = variables().get( key );
-
-			if( value != null ) {
-				result = USStringUtilities.replace( result, "${" + key + "}", value.toString() );
-			}
-			else {
-				result = USStringUtilities.replace( result, "${" + key + "}", "" );
-			}
+		USCompiledTemplate compiledTemplate = compiledTemplate();
+
+		if( compiledTemplate == null ) {
+			return null;
 		}
 
-		return result;
+		return compiledTemplate.render( variables() );
+	}
+
+	/**
+	 * Renders the template directly to the given destination, without creating the rendered template as a string.
+	 * Nothing is written if no template string has been set.
+	 */
+	@Override
+	public void parse( Appendable out ) throws IOException {
+		USCompiledTemplate compiledTemplate = compiledTemplate();
+
+		if( compiledTemplate != null ) {
+			compiledTemplate.render( variables(), out );
+		}
 	}
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package is.us.util;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 import org.slf4j.*;
@@ -24,19 +26,31 @@ public class USDataUtilities {
 	 */
 	private USDataUtilities() {}
 
+	/**
+	 * Size of the buffer used for reading streams of unknown length.
+	 */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/**
+	 * Largest byte array we attempt to allocate. Some VMs reserve a few header words in an array, so Integer.MAX_VALUE itself can't be allocated.
+	 */
+	private static final int MAXIMUM_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
 	/**
 	 * Reads a file and returns a byte array.
 	 * 
 	 * @param sourceFile The file to read from
+	 * @return The file's contents, or null if the file could not be read or is larger than the maximum size of an array
 	 */
 	public static byte[] readBytesFromFile( File sourceFile ) {
+		InputStream is = null;
 
 		try {
-			InputStream is = new FileInputStream( sourceFile );
+			is = new FileInputStream( sourceFile );
 			long length = sourceFile.length();
 
 			if( length > Integer.MAX_VALUE ) {
-				// File is too large
+				throw new IOException( "File is too large to read into an array: " + sourceFile );
 			}
 
 			byte[] bytes = new byte[(int)length];
@@ -51,93 +65,294 @@ public class USDataUtilities {
 				throw new IOException( "Could not completely read file " + sourceFile.getName() );
 			}
 
-			is.close();
 			return bytes;
 		}
 		catch( IOException e ) {
 			logger.debug( "Failed to read data from file: " + sourceFile, e );
 			return null;
 		}
+		finally {
+			close( is );
+		}
 	}
 
-	public static byte[] readBytesFromStream( InputStream in ) {
-		List<Byte> bytes = new ArrayList<Byte>();
+	/**
+	 * Maps a file into memory, read only. The file's contents are not copied into the Java heap.
+	 * 
+	 * The mapping remains valid after this method returns, until the buffer is garbage collected.
+	 * 
+	 * @param sourceFile The file to map
+	 * @return A buffer with the file's contents, or null if the file could not be mapped (files larger than Integer.MAX_VALUE bytes can't be mapped)
+	 */
+	public static MappedByteBuffer mapFile( File sourceFile ) {
+		FileInputStream in = null;
+
+		try {
+			in = new FileInputStream( sourceFile );
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+
+			if( size > Integer.MAX_VALUE ) {
+				logger.debug( "File is too large to map: " + sourceFile );
+				return null;
+			}
+
+			return channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+		}
+		catch( IOException e ) {
+			logger.debug( "Failed to map file: " + sourceFile, e );
+			return null;
+		}
+		finally {
+			close( in );
+		}
+	}
+
+	/**
+	 * Reads a file in chunks, passing each chunk to the given handler. Only one chunk is in memory at a time, so files of any size can be processed.
+	 * 
+	 * The same buffer is used for every chunk, so the handler must not keep a reference to it after returning.
+	 * 
+	 * @param sourceFile The file to read from
+	 * @param chunkSize The maximum number of bytes in each chunk, at least 1
+	 * @param handler The handler to pass each chunk to
+	 * @return The number of bytes read, or -1 if reading failed or the handler threw an IOException. Other exceptions thrown by the handler are not caught.
+	 * @throws IllegalArgumentException if chunkSize is less than 1
+	 */
+	public static long readFileInChunks( File sourceFile, int chunkSize, ChunkHandler handler ) {
+
+		if( chunkSize < 1 ) {
+			throw new IllegalArgumentException( "Chunk size must be at least 1, was " + chunkSize );
+		}
+
+		FileInputStream in = null;
 
-		int b = 0;
 		try {
-			while( (b = in.read()) != -1 ) {
-				bytes.add( new Byte( (byte)b ) );
+			in = new FileInputStream( sourceFile );
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate( chunkSize );
+			long total = 0;
+
+			while( channel.read( buffer ) != -1 ) {
+				buffer.flip();
+				total += buffer.remaining();
+				handler.handleChunk( buffer );
+				buffer.clear();
 			}
+
+			return total;
+		}
+		catch( IOException e ) {
+			logger.debug( "Failed to read data from file: " + sourceFile, e );
+			return -1;
+		}
+		finally {
+			close( in );
+		}
+	}
+
+	/**
+	 * Copies a file using FileChannel.transferTo(), letting the operating system move the data without passing it through the Java heap.
+	 * If the source file is truncated while it's being copied, the copy ends where the file now ends.
+	 * 
+	 * @param sourceFile The file to copy
+	 * @param destination The file to copy to. Overwritten if it exists.
+	 * @return true if the file was copied
+	 */
+	public static boolean copyFile( File sourceFile, File destination ) {
+		FileInputStream in = null;
+		FileOutputStream out = null;
+
+		try {
+			in = new FileInputStream( sourceFile );
+			out = new FileOutputStream( destination );
+			FileChannel source = in.getChannel();
+			FileChannel target = out.getChannel();
+			long size = source.size();
+			long position = 0;
+
+			// transferTo() may transfer fewer bytes than requested.
+			while( position < size ) {
+				long transferred = source.transferTo( position, size - position, target );
+
+				// Nothing more can be transferred if the file has shrunk since its size was read.
+				if( transferred == 0 && position >= source.size() ) {
+					break;
+				}
+
+				position += transferred;
+			}
+
+			return true;
+		}
+		catch( IOException e ) {
+			logger.error( "Failed to copy file: " + sourceFile + " to " + destination, e );
+			return false;
+		}
+		finally {
+			close( in );
+			close( out );
+		}
+	}
+
+	/**
+	 * Reads all remaining bytes from a stream. The stream is not closed.
+	 * 
+	 * @param in The stream to read from
+	 * @return The bytes read, or null if reading failed
+	 */
+	public static byte[] readBytesFromStream( InputStream in ) {
+		return readBytesFromStream( in, -1 );
+	}
+
+	/**
+	 * Reads all remaining bytes from a stream. The stream is not closed.
+	 * 
+	 * @param in The stream to read from
+	 * @param lengthHint The expected number of bytes, used to size the buffer. If negative, the stream's available() is used as a hint.
+	 * @return The bytes read, or null if reading failed
+	 */
+	public static byte[] readBytesFromStream( InputStream in, int lengthHint ) {
+		ByteBuffer buffer = readByteBufferFromStream( in, lengthHint );
+
+		if( buffer == null ) {
+			return null;
+		}
+
+		byte[] bytes = buffer.array();
+
+		if( bytes.length == buffer.limit() ) {
+			return bytes;
+		}
+
+		return Arrays.copyOf( bytes, buffer.limit() );
+	}
+
+	/**
+	 * Reads all remaining bytes from a stream into a heap ByteBuffer, without copying them into an exactly sized array at the end.
+	 * The stream is not closed.
+	 * 
+	 * @param in The stream to read from
+	 * @param lengthHint The expected number of bytes, used to size the buffer. If negative, the stream's available() is used as a hint.
+	 * @return A buffer positioned at zero with the bytes read as its remaining content, or null if reading failed
+	 */
+	public static ByteBuffer readByteBufferFromStream( InputStream in, int lengthHint ) {
+
+		try {
+			return readFully( in, lengthHint );
 		}
 		catch( IOException e ) {
 			logger.debug( "Failed to read data from input stream", e );
 			return null;
 		}
+	}
+
+	/**
+	 * Implementation of readByteBufferFromStream(), throwing any exception that occurs.
+	 */
+	static ByteBuffer readFully( InputStream in, int lengthHint ) throws IOException {
 
-		byte[] rslt = new byte[bytes.size()];
-		for( int i = 0; i < bytes.size(); i++ ) {
-			rslt[i] = bytes.get( i );
+		if( lengthHint < 0 ) {
+			lengthHint = in.available();
 		}
-		return rslt;
+
+		byte[] bytes = new byte[(lengthHint > 0) ? Math.min( lengthHint, MAXIMUM_ARRAY_SIZE ) : READ_BUFFER_SIZE];
+		int length = 0;
+
+		while( true ) {
+			int read = in.read( bytes, length, bytes.length - length );
+
+			if( read == -1 ) {
+				break;
+			}
+
+			length += read;
+
+			if( length == bytes.length ) {
+				// If the buffer was sized exactly, this is the only extra read needed.
+				int next = in.read();
+
+				if( next == -1 ) {
+					break;
+				}
+
+				if( bytes.length >= MAXIMUM_ARRAY_SIZE ) {
+					throw new IOException( "Stream is too large to read into a byte array" );
+				}
+
+				bytes = Arrays.copyOf( bytes, (int)Math.min( Math.max( bytes.length * 2L, READ_BUFFER_SIZE ), MAXIMUM_ARRAY_SIZE ) );
+				bytes[length++] = (byte)next;
+			}
+		}
+
+		return ByteBuffer.wrap( bytes, 0, length );
 	}
 
 	/**
 	 * Writes a byte array to a file.
 	 * 
+	 * To replace a file atomically, or to make sure the data has reached the disk, use USFileWriter.
+	 * 
 	 * @param destination The file to write to
 	 */
 	public static void writeBytesToFile( byte[] bytes, File destination ) {
+		FileOutputStream fos = null;
 
 		try {
-			FileOutputStream fos = new FileOutputStream( destination );
+			fos = new FileOutputStream( destination );
 			fos.write( bytes );
-			fos.close();
 		}
 		catch( Exception e ) {
 			logger.error( "Failed to write data to file", e );
 		}
+		finally {
+			close( fos );
+		}
 	}
 
 	/**
-	 * Downloads a document from the given URL.
+	 * Downloads a document from the given URL, using USHTTPClient.sharedClient().
 	 * 
 	 * @param sourceURL The URL to download data from.
+	 * @return The document, or null if it could not be downloaded.
 	 */
 	public static byte[] readBytesFromURL( String sourceURL ) {
-		OutputStream out = null;
-		URLConnection conn = null;
-		InputStream in = null;
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
 		try {
-			URL url = new URL( sourceURL );
-			out = new BufferedOutputStream( bos );
-			conn = url.openConnection();
-			in = conn.getInputStream();
-			byte[] buffer = new byte[1024];
-			int numRead;
-			long numWritten = 0;
-
-			while( (numRead = in.read( buffer )) != -1 ) {
-				out.write( buffer, 0, numRead );
-				numWritten += numRead;
-			}
+			return USHTTPClient.sharedClient().readBytes( sourceURL );
 		}
-		catch( Exception exception ) {
-			exception.printStackTrace();
+		catch( IOException e ) {
+			logger.error( "Failed to read data from URL: " + sourceURL, e );
+			return null;
 		}
-		finally {
+	}
+
+	/**
+	 * Closes the given stream, logging any errors.
+	 */
+	private static void close( Closeable closeable ) {
+
+		if( closeable != null ) {
 			try {
-				if( in != null ) {
-					in.close();
-				}
-				if( out != null ) {
-					out.close();
-				}
+				closeable.close();
+			}
+			catch( IOException e ) {
+				logger.debug( "Failed to close stream", e );
 			}
-			catch( IOException ioe ) {}
 		}
+	}
+
+	/**
+	 * Receives the chunks read by readFileInChunks().
+	 */
+	public static interface ChunkHandler {
 
-		return bos.toByteArray();
+		/**
+		 * Handles a chunk of data.
+		 * 
+		 * @param chunk A buffer positioned at the start of the chunk, with the chunk as its remaining content. Only valid until the method returns.
+		 * @throws IOException To stop reading.
+		 */
+		public void handleChunk( ByteBuffer chunk ) throws IOException;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,335 @@
+package is.us.util;
+
+import java.util.*;
+
+/**
+ * A column of dates, such as birthdates or registration dates, stored as epoch days (see USDateUtilities.epochDay()) in an int[].
+ * A date takes four bytes in a column, rather than the two objects of a Date held in a collection.
+ * 
+ * Calculations are performed on the whole column at once, in plain loops over the array, and return an array with one element for each date.
+ * Missing dates are stored as NO_DATE, and each calculation documents what it gives for them.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USDateColumn birthdates = USDateColumn.birthdatesFromPersidnos( persidnos );
+ * 		int[] ages = birthdates.agesAt( USDateUtilities.epochDay( new Date() ) );
+ * 		boolean[] bornOnHoliday = birthdates.holidayMask();
+ * </code>
+ * 
+ * The column is not thread safe. If it's modified while being used by multiple threads, access must be synchronized externally.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USDateColumn {
+
+	/**
+	 * Stored in place of a missing date.
+	 */
+	public static final int NO_DATE = Integer.MIN_VALUE;
+
+	/**
+	 * The dates, as epoch days. Only the first _size elements are used.
+	 */
+	private int[] _epochDays;
+
+	/**
+	 * Number of dates in the column.
+	 */
+	private int _size;
+
+	/**
+	 * Constructs an empty column.
+	 */
+	public USDateColumn() {
+		this( 16 );
+	}
+
+	/**
+	 * Constructs an empty column with room for the given number of dates.
+	 */
+	public USDateColumn( int capacity ) {
+		_epochDays = new int[capacity];
+	}
+
+	/**
+	 * Constructs a column containing the given epoch days. The array is copied.
+	 */
+	public USDateColumn( int[] epochDays ) {
+		_epochDays = epochDays.clone();
+		_size = epochDays.length;
+	}
+
+	/**
+	 * Constructs a column containing the days the given dates fall on in the default time zone. Null dates are stored as NO_DATE.
+	 */
+	public static USDateColumn fromDates( Collection<Date> dates ) {
+		USDateColumn column = new USDateColumn( dates.size() );
+
+		for( Date date : dates ) {
+			column.add( date );
+		}
+
+		return column;
+	}
+
+	/**
+	 * Constructs a column containing the birthdates of the individuals with the given persidnos.
+	 * Null persidnos, company persidnos and persidnos that are not ten digits long are stored as NO_DATE.
+	 */
+	public static USDateColumn birthdatesFromPersidnos( String[] persidnos ) {
+		USDateColumn column = new USDateColumn( persidnos.length );
+
+		for( String persidno : persidnos ) {
+			column.add( birthEpochDay( persidno ) );
+		}
+
+		return column;
+	}
+
+	/**
+	 * @return The epoch day of the birthdate of the individual with the given persidno, or NO_DATE.
+	 */
+	private static int birthEpochDay( String persidno ) {
+
+		if( persidno == null ) {
+			return NO_DATE;
+		}
+
+		persidno = USPersidnoUtilities.cleanupPersidno( persidno );
+
+		if( persidno.length() != 10 ) {
+			return NO_DATE;
+		}
+
+		try {
+			Integer year = USPersidnoUtilities.birthyearFromPersidno( persidno );
+
+			if( year == null ) {
+				return NO_DATE;
+			}
+
+			return USDateUtilities.epochDay( year, USPersidnoUtilities.birthMonthFromPersidno( persidno ), USPersidnoUtilities.birthDayFromPersidno( persidno ) );
+		}
+		catch( NumberFormatException e ) {
+			return NO_DATE;
+		}
+	}
+
+	/**
+	 * Adds the given epoch day to the end of the column.
+	 */
+	public void add( int epochDay ) {
+
+		if( _size == _epochDays.length ) {
+			_epochDays = Arrays.copyOf( _epochDays, Math.max( 16, _size * 2 ) );
+		}
+
+		_epochDays[_size++] = epochDay;
+	}
+
+	/**
+	 * Adds the day the given date falls on in the default time zone to the end of the column. A null date is stored as NO_DATE.
+	 */
+	public void add( Date date ) {
+		add( (date != null) ? USDateUtilities.epochDay( date ) : NO_DATE );
+	}
+
+	/**
+	 * @return The epoch day at the given index, or NO_DATE.
+	 */
+	public int get( int index ) {
+		checkIndex( index );
+		return _epochDays[index];
+	}
+
+	/**
+	 * Replaces the epoch day at the given index.
+	 */
+	public void set( int index, int epochDay ) {
+		checkIndex( index );
+		_epochDays[index] = epochDay;
+	}
+
+	/**
+	 * @return A date at midnight in the default time zone for the epoch day at the given index, or null if the date is missing.
+	 */
+	public Date date( int index ) {
+		int epochDay = get( index );
+		return (epochDay != NO_DATE) ? USDateUtilities.dateForEpochDay( epochDay ) : null;
+	}
+
+	/**
+	 * Number of dates in the column.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * @return A copy of the epoch days in the column.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf( _epochDays, _size );
+	}
+
+	/**
+	 * Calculates the age of each person at the given day, taking the dates in the column to be birthdates.
+	 * 
+	 * @param epochDay The epoch day at which we want to know the ages.
+	 * @return The ages, -1 for missing dates.
+	 */
+	public int[] agesAt( int epochDay ) {
+		int[] result = new int[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int birthEpochDay = _epochDays[i];
+			result[i] = (birthEpochDay != NO_DATE) ? USDateUtilities.ageAtEpochDay( birthEpochDay, epochDay ) : -1;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Calculates the number of days from each date in the column to the given day.
+	 * 
+	 * @param epochDay The epoch day to count to.
+	 * @return The number of days, negative for dates after the given day. Integer.MIN_VALUE for missing dates.
+	 */
+	public int[] daysUntil( int epochDay ) {
+		int[] result = new int[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int date = _epochDays[i];
+			result[i] = (date != NO_DATE) ? epochDay - date : Integer.MIN_VALUE;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Calculates the number of days from each date in this column to the date at the same index in another column.
+	 * 
+	 * @param other A column of the same size.
+	 * @return The number of days, negative where the other date is earlier. Integer.MIN_VALUE where either date is missing.
+	 */
+	public int[] daysUntil( USDateColumn other ) {
+
+		if( other.size() != _size ) {
+			throw new IllegalArgumentException( "Columns must be of the same size, were " + _size + " and " + other.size() );
+		}
+
+		int[] result = new int[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int from = _epochDays[i];
+			int to = other._epochDays[i];
+			result[i] = (from != NO_DATE && to != NO_DATE) ? to - from : Integer.MIN_VALUE;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return For each date, true if it's a Saturday or a Sunday. False for missing dates.
+	 */
+	public boolean[] weekendMask() {
+		boolean[] result = new boolean[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int epochDay = _epochDays[i];
+			result[i] = (epochDay != NO_DATE) && USDateUtilities.isWeekend( epochDay );
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return For each date, true if it's not a Saturday or a Sunday. False for missing dates.
+	 */
+	public boolean[] weekdayMask() {
+		boolean[] result = new boolean[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int epochDay = _epochDays[i];
+			result[i] = (epochDay != NO_DATE) && !USDateUtilities.isWeekend( epochDay );
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return For each date, true if it's a holiday, full or partial (see USHolidays). False for missing dates.
+	 */
+	public boolean[] holidayMask() {
+		return holidayMask( USHolidayCalendar.ICELANDIC );
+	}
+
+	/**
+	 * @return For each date, true if it's a holiday, full or partial, in the given calendar. False for missing dates.
+	 */
+	public boolean[] holidayMask( USHolidayCalendar calendar ) {
+		boolean[] result = new boolean[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int epochDay = _epochDays[i];
+			result[i] = (epochDay != NO_DATE) && calendar.isHoliday( epochDay );
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return For each date, true if it's a full holiday (see USHolidays). False for missing dates.
+	 */
+	public boolean[] fullHolidayMask() {
+		return fullHolidayMask( USHolidayCalendar.ICELANDIC );
+	}
+
+	/**
+	 * @return For each date, true if it's a full holiday in the given calendar. False for missing dates.
+	 */
+	public boolean[] fullHolidayMask( USHolidayCalendar calendar ) {
+		boolean[] result = new boolean[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int epochDay = _epochDays[i];
+			result[i] = (epochDay != NO_DATE) && calendar.isFullHoliday( epochDay );
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return For each date, true if it's not on a weekend and is not a full holiday (see USHolidays). False for missing dates.
+	 */
+	public boolean[] workdayMask() {
+		return workdayMask( USHolidayCalendar.ICELANDIC );
+	}
+
+	/**
+	 * @return For each date, true if it's not on a weekend and is not a full holiday in the given calendar. False for missing dates.
+	 */
+	public boolean[] workdayMask( USHolidayCalendar calendar ) {
+		boolean[] result = new boolean[_size];
+
+		for( int i = 0; i < _size; i++ ) {
+			int epochDay = _epochDays[i];
+			result[i] = (epochDay != NO_DATE) && calendar.isWorkday( epochDay );
+		}
+
+		return result;
+	}
+
+	private void checkIndex( int index ) {
+		if( index < 0 || index >= _size ) {
+			throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + _size );
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " - size: " + _size;
+	}
+}
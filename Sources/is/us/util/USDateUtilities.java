@@ -5,6 +5,10 @@ import java.util.*;
 /**
  * Various utility methods for handling dates.
  * 
+ * Days can also be handled as epoch days, ints counting the days from 1970-01-01, using the methods named after them.
+ * Those do not create any objects, and the methods that take or return a Date in the default time zone are built on them,
+ * only leaving dates before 1583 and local times close to a change in the time zone's offset to GregorianCalendar.
+ * 
  * @author Hugi Þórðarson
  */
 
@@ -13,6 +17,226 @@ public class USDateUtilities {
 	public static final long MILLISECONDS_IN_DAY = 86400000L;
 	public static final long MILLISECONDS_IN_MINUTE = 1000 * 60;
 
+	/**
+	 * Number of days in a 400 year cycle of the Gregorian calendar.
+	 */
+	private static final int DAYS_IN_400_YEARS = 146097;
+
+	/**
+	 * Number of days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar.
+	 */
+	private static final int DAYS_FROM_YEAR_ZERO_TO_EPOCH = 719468;
+
+	/**
+	 * Epoch day of October 15, 1582. GregorianCalendar uses the Julian calendar before this day, so the
+	 * methods that take or return a Date leave earlier days to GregorianCalendar.
+	 */
+	private static final int GREGORIAN_CUTOVER_EPOCH_DAY = -141427;
+
+	/**
+	 * Local times this close to a change in a time zone's offset are converted using GregorianCalendar.
+	 */
+	private static final long OFFSET_CHANGE_MARGIN = MILLISECONDS_IN_DAY / 2;
+
+	/*
+	 * Methods for working with days as epoch days, the number of days from 1970-01-01 in the proleptic Gregorian calendar.
+	 * These do not create any objects, don't depend on the default time zone, and are safe to use from multiple threads.
+	 * Month numbers are not zero-based! That means January = 1, December = 12.
+	 */
+
+	/**
+	 * The epoch day of the given date in the default time zone, i.e. the number of days from 1970-01-01 to the day the date falls on.
+	 * 
+	 * @param date The date to get the epoch day for.
+	 * @return The epoch day, negative for days before 1970.
+	 */
+	public static int epochDay( Date date ) {
+		return epochDay( date.getTime(), TimeZone.getDefault() );
+	}
+
+	/**
+	 * The epoch day of the given time in the given time zone, i.e. the number of days from 1970-01-01 to the day the time falls on.
+	 * 
+	 * @param millis Milliseconds since 1970-01-01 00:00 UTC.
+	 * @param timeZone The time zone to determine the day in.
+	 * @return The epoch day, negative for days before 1970.
+	 */
+	public static int epochDay( long millis, TimeZone timeZone ) {
+		return (int)floorDiv( millis + timeZone.getOffset( millis ), MILLISECONDS_IN_DAY );
+	}
+
+	/**
+	 * The epoch day of the given day in the proleptic Gregorian calendar.
+	 * Days and months outside their normal ranges roll over, so month 13 is January of the following year and day 0 is the last day of the previous month.
+	 * 
+	 * Note that GregorianCalendar uses the Julian calendar before October 15, 1582, so for earlier days the results differ.
+	 */
+	public static int epochDay( int year, int month, int day ) {
+		year += (int)floorDiv( month - 1, 12 );
+		month = (int)(month - 1 - floorDiv( month - 1, 12 ) * 12) + 1;
+
+		int y = (month <= 2) ? year - 1 : year;
+		int era = ((y >= 0) ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * ((month > 2) ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_IN_400_YEARS + dayOfEra - DAYS_FROM_YEAR_ZERO_TO_EPOCH;
+	}
+
+	/**
+	 * The year of the given epoch day in the proleptic Gregorian calendar.
+	 */
+	public static int yearOfEpochDay( int epochDay ) {
+		return yearMonthDay( epochDay ) >> 9;
+	}
+
+	/**
+	 * The month of the given epoch day in the proleptic Gregorian calendar.
+	 * Not. Zero. Based.
+	 */
+	public static int monthOfEpochDay( int epochDay ) {
+		return (yearMonthDay( epochDay ) >> 5) & 15;
+	}
+
+	/**
+	 * The day of month of the given epoch day in the proleptic Gregorian calendar.
+	 */
+	public static int dayOfMonthOfEpochDay( int epochDay ) {
+		return yearMonthDay( epochDay ) & 31;
+	}
+
+	/**
+	 * The day of week of the given epoch day, as one of the GregorianCalendar constants SUNDAY to SATURDAY.
+	 */
+	public static int dayOfWeek( int epochDay ) {
+		// 1970-01-01 was a Thursday.
+		int daysFromSunday = (epochDay + 4) % 7;
+		return ((daysFromSunday < 0) ? daysFromSunday + 7 : daysFromSunday) + GregorianCalendar.SUNDAY;
+	}
+
+	/**
+	 * True if the given epoch day is a Saturday or a Sunday.
+	 */
+	public static boolean isWeekend( int epochDay ) {
+		int dayOfWeek = dayOfWeek( epochDay );
+		return dayOfWeek == GregorianCalendar.SATURDAY || dayOfWeek == GregorianCalendar.SUNDAY;
+	}
+
+	/**
+	 * Calculates the age of a person born on one epoch day at another epoch day.
+	 * 
+	 * @param birthEpochDay The epoch day the person was born on.
+	 * @param epochDay The epoch day at which we want to know the person's age.
+	 * @return The person's age at [epochDay]
+	 */
+	public static int ageAtEpochDay( int birthEpochDay, int epochDay ) {
+		int birth = yearMonthDay( birthEpochDay );
+		int date = yearMonthDay( epochDay );
+		int ageInYears = (date >> 9) - (birth >> 9);
+
+		// The lowest 9 bits hold the month and day, so they compare in calendar order.
+		if( (date & 511) < (birth & 511) ) {
+			return ageInYears - 1;
+		}
+
+		return ageInYears;
+	}
+
+	/**
+	 * The start of the given epoch day in the given time zone, normally midnight.
+	 * If the day does not start at midnight due to a change in the time zone's offset, the first moment of the day is returned.
+	 * 
+	 * @return Milliseconds since 1970-01-01 00:00 UTC.
+	 */
+	public static long startOfEpochDay( int epochDay, TimeZone timeZone ) {
+		return millisForLocalTime( epochDay * MILLISECONDS_IN_DAY, timeZone );
+	}
+
+	/**
+	 * @return A date at the start of the given epoch day in the default time zone, normally midnight.
+	 */
+	public static Date dateForEpochDay( int epochDay ) {
+
+		if( epochDay < GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return date( yearOfEpochDay( epochDay ), monthOfEpochDay( epochDay ), dayOfMonthOfEpochDay( epochDay ) );
+		}
+
+		return new Date( startOfEpochDay( epochDay, TimeZone.getDefault() ) );
+	}
+
+	/**
+	 * The year, month and day of the given epoch day, packed into an int as (year << 9) | (month << 5) | day.
+	 */
+	private static int yearMonthDay( int epochDay ) {
+		int z = epochDay + DAYS_FROM_YEAR_ZERO_TO_EPOCH;
+		int era = ((z >= 0) ? z : z - DAYS_IN_400_YEARS + 1) / DAYS_IN_400_YEARS;
+		int dayOfEra = z - era * DAYS_IN_400_YEARS;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / (DAYS_IN_400_YEARS - 1)) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int monthIndex = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+		int month = (monthIndex < 10) ? monthIndex + 3 : monthIndex - 9;
+
+		// Years are counted from March, so January and February belong to the following year.
+		int year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+
+		return (year << 9) | (month << 5) | day;
+	}
+
+	/**
+	 * Converts a local time in the given time zone to milliseconds since 1970-01-01 00:00 UTC.
+	 * Close to a change in the time zone's offset, the conversion is left to GregorianCalendar, so skipped and repeated
+	 * local times are resolved the same way as by the Calendar based methods.
+	 * 
+	 * @param localMillis Milliseconds since 1970-01-01 00:00 local time.
+	 */
+	private static long millisForLocalTime( long localMillis, TimeZone timeZone ) {
+		long millis = millisForLocalTimeAwayFromOffsetChange( localMillis, timeZone );
+
+		if( millis != Long.MIN_VALUE ) {
+			return millis;
+		}
+
+		int epochDay = (int)floorDiv( localMillis, MILLISECONDS_IN_DAY );
+		int timeOfDay = (int)(localMillis - epochDay * MILLISECONDS_IN_DAY);
+
+		GregorianCalendar calendar = new GregorianCalendar( timeZone );
+		calendar.clear();
+		calendar.set( yearOfEpochDay( epochDay ), monthOfEpochDay( epochDay ) - 1, dayOfMonthOfEpochDay( epochDay ), timeOfDay / 3600000, timeOfDay / 60000 % 60, timeOfDay / 1000 % 60 );
+		calendar.set( Calendar.MILLISECOND, timeOfDay % 1000 );
+		return calendar.getTimeInMillis();
+	}
+
+	/**
+	 * Converts a local time in the given time zone to milliseconds since 1970-01-01 00:00 UTC, if the time zone's offset does not change close to it.
+	 * 
+	 * @param localMillis Milliseconds since 1970-01-01 00:00 local time.
+	 * @return The converted time, or Long.MIN_VALUE if the offset changes close to it.
+	 */
+	private static long millisForLocalTimeAwayFromOffsetChange( long localMillis, TimeZone timeZone ) {
+		long millis = localMillis - timeZone.getOffset( localMillis - timeZone.getRawOffset() );
+		int offset = timeZone.getOffset( millis );
+
+		if( millis + offset == localMillis && timeZone.getOffset( millis - OFFSET_CHANGE_MARGIN ) == offset && timeZone.getOffset( millis + OFFSET_CHANGE_MARGIN ) == offset ) {
+			return millis;
+		}
+
+		return Long.MIN_VALUE;
+	}
+
+	/**
+	 * Division rounding towards negative infinity.
+	 */
+	private static long floorDiv( long dividend, long divisor ) {
+		long quotient = dividend / divisor;
+
+		if( (dividend % divisor != 0) && ((dividend < 0) != (divisor < 0)) ) {
+			quotient--;
+		}
+
+		return quotient;
+	}
+
 	/**
 	 * Compares the two dates and calculates the number of days from one date to another( both dates are included ).
 	 * Time of day is irrelevant.
@@ -64,10 +288,13 @@ public class USDateUtilities {
 	 * @reviewedby Logi Helgu at Jun 24, 2009( see JIRA issue INN-622 )
 	 */
 	public static Date normalizeToMidnight( Date date ) {
-		GregorianCalendar c = (GregorianCalendar)GregorianCalendar.getInstance();
-		c.setTime( date );
-		c = normalizeToMidnight( c );
-		return c.getTime();
+		int epochDay = epochDay( date );
+
+		if( epochDay < GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return cal( date ).getTime();
+		}
+
+		return dateForEpochDay( epochDay );
 	}
 
 	/**
@@ -127,6 +354,19 @@ public class USDateUtilities {
 	 * @return the given date with the given days added
 	 */
 	public static Date addDays( Date date, int days ) {
+		TimeZone timeZone = TimeZone.getDefault();
+		long localMillis = date.getTime() + timeZone.getOffset( date.getTime() );
+		long newLocalMillis = localMillis + days * MILLISECONDS_IN_DAY;
+
+		if( floorDiv( Math.min( localMillis, newLocalMillis ), MILLISECONDS_IN_DAY ) >= GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			long millis = millisForLocalTimeAwayFromOffsetChange( newLocalMillis, timeZone );
+
+			// Close to an offset change, Calendar.add() keeps the offset of the original date where it can.
+			if( millis != Long.MIN_VALUE ) {
+				return new Date( millis );
+			}
+		}
+
 		GregorianCalendar c = (GregorianCalendar)GregorianCalendar.getInstance();
 		c.setTime( date );
 		c.add( GregorianCalendar.DAY_OF_MONTH, days );
@@ -152,19 +392,8 @@ public class USDateUtilities {
 	 * @return true if the given date is today, otherwise false
 	 */
 	public static boolean isToday( Date date ) {
-		GregorianCalendar today = (GregorianCalendar)GregorianCalendar.getInstance();
-		GregorianCalendar candidate = (GregorianCalendar)GregorianCalendar.getInstance();
-		candidate.setTime( date );
-
-		if( today.get( GregorianCalendar.YEAR ) != candidate.get( GregorianCalendar.YEAR ) ) {
-			return false;
-		}
-
-		if( today.get( GregorianCalendar.DAY_OF_YEAR ) != candidate.get( GregorianCalendar.DAY_OF_YEAR ) ) {
-			return false;
-		}
-
-		return true;
+		TimeZone timeZone = TimeZone.getDefault();
+		return epochDay( date.getTime(), timeZone ) == epochDay( System.currentTimeMillis(), timeZone );
 	}
 
 	/**
@@ -214,15 +443,7 @@ public class USDateUtilities {
 	 * @return true if the given date is not a Saturday or a Sunday.
 	 */
 	public static boolean isWeekday( Date date ) {
-		GregorianCalendar c = cal( date );
-
-		int dayOfWeek = c.get( GregorianCalendar.DAY_OF_WEEK );
-
-		if( dayOfWeek == GregorianCalendar.SATURDAY || dayOfWeek == GregorianCalendar.SUNDAY ) {
-			return false;
-		}
-
-		return true;
+		return !isWeekend( epochDay( date ) );
 	}
 
 	/**
@@ -241,23 +462,52 @@ public class USDateUtilities {
 	 * @param date the date to check
 	 */
 	public static boolean isWorkday( Date date ) {
-		return !USDateUtilities.isWeekend( date ) && !USHolidays.isFullHoliday( date );
+		return USHolidays.isWorkday( epochDay( date ) );
+	}
+
+	/**
+	 * Finds the workday the given number of workdays after (or before) the given date.
+	 * The given date itself is not counted, so adding one workday gives the next workday after it.
+	 * The time taken does not depend on the number of workdays.
+	 * 
+	 * @param date The date to count from.
+	 * @param workdays The number of workdays to add, use a negative number for subtraction.
+	 * @return The resulting workday, at midnight. If workdays is zero, the given date normalized to midnight.
+	 * @throws IllegalArgumentException if the result or the given date is outside the years 1900 to 2199.
+	 */
+	public static Date addWorkdays( Date date, int workdays ) {
+		return dateForEpochDay( USHolidays.addWorkdays( epochDay( date ), workdays ) );
+	}
+
+	/**
+	 * Counts the workdays from one date up to, but not including, another. Time of day is irrelevant.
+	 * The time taken does not depend on the length of the period.
+	 * 
+	 * @param fromDate The first day to count.
+	 * @param toDate The day after the last day to count.
+	 * @return The number of workdays, negative if toDate is before fromDate.
+	 * @throws IllegalArgumentException if either date is outside the years 1900 to 2199.
+	 */
+	public static int workdaysBetween( Date fromDate, Date toDate ) {
+		return USHolidays.workdaysBetween( epochDay( fromDate ), epochDay( toDate ) );
 	}
 
 	/**
 	 * Returns the next work day after the date in the given date.
 	 * 
 	 * @param date The date to check from.
+	 * @deprecated Use the static addWorkdays( date, 1 ).
 	 */
+	@Deprecated
 	public Date nextWorkDay( Date date ) {
-		date = normalizeToMidnight( date );
-		date = date( year( date ), monthOfYear( date ), dayOfMonth( date ) + 1 );
+		// Steps a day at a time rather than using addWorkdays(), which only handles the years 1900 to 2199.
+		int epochDay = epochDay( date ) + 1;
 
-		while( !isWorkday( date ) ) {
-			date = date( year( date ), monthOfYear( date ), dayOfMonth( date ) + 1 );
+		while( !USHolidays.isWorkday( epochDay ) ) {
+			epochDay++;
 		}
 
-		return date;
+		return dateForEpochDay( epochDay );
 	}
 
 	/**
@@ -266,7 +516,13 @@ public class USDateUtilities {
 	 * @param date The date to get the year from
 	 */
 	public static int year( Date date ) {
-		return cal( date ).get( GregorianCalendar.YEAR );
+		int epochDay = epochDay( date );
+
+		if( epochDay < GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return cal( date ).get( GregorianCalendar.YEAR );
+		}
+
+		return yearOfEpochDay( epochDay );
 	}
 
 	/**
@@ -276,7 +532,13 @@ public class USDateUtilities {
 	 * @param date The date to get the month from
 	 */
 	public static int monthOfYear( Date date ) {
-		return cal( date ).get( GregorianCalendar.MONTH ) + 1;
+		int epochDay = epochDay( date );
+
+		if( epochDay < GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return cal( date ).get( GregorianCalendar.MONTH ) + 1;
+		}
+
+		return monthOfEpochDay( epochDay );
 	}
 
 	/**
@@ -285,7 +547,13 @@ public class USDateUtilities {
 	 * @param date The date to get the year from
 	 */
 	public static int dayOfMonth( Date date ) {
-		return cal( date ).get( GregorianCalendar.DAY_OF_MONTH );
+		int epochDay = epochDay( date );
+
+		if( epochDay < GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return cal( date ).get( GregorianCalendar.DAY_OF_MONTH );
+		}
+
+		return dayOfMonthOfEpochDay( epochDay );
 	}
 
 	/**
@@ -305,6 +573,13 @@ public class USDateUtilities {
 			date = new Date();
 		}
 
+		int birthEpochDay = epochDay( birthDate );
+		int epochDay = epochDay( date );
+
+		if( birthEpochDay >= GREGORIAN_CUTOVER_EPOCH_DAY && epochDay >= GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return ageAtEpochDay( birthEpochDay, epochDay );
+		}
+
 		GregorianCalendar dateCalendar = cal( date );
 		GregorianCalendar birthdateCalendar = cal( birthDate );
 
@@ -325,6 +600,12 @@ public class USDateUtilities {
 	 * Month numbers are not zero-based! That means January = 1, December = 12.
 	 */
 	public static Date date( int year, int month, int day ) {
+		int epochDay = epochDay( year, month, day );
+
+		if( epochDay >= GREGORIAN_CUTOVER_EPOCH_DAY ) {
+			return new Date( startOfEpochDay( epochDay, TimeZone.getDefault() ) );
+		}
+
 		GregorianCalendar calendar = (GregorianCalendar)GregorianCalendar.getInstance();
 		calendar.clear();
 		calendar.set( Calendar.YEAR, year );
@@ -0,0 +1,390 @@
+package is.us.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.slf4j.*;
+
+/**
+ * Writes files atomically: data is written to a temporary file in the destination's directory, which then replaces the destination.
+ * Readers of the destination therefore see either the old or the new contents, never a partially written file.
+ * 
+ * Optionally, the data is forced to the storage device (fsync) before the temporary file is renamed, so a crash can't leave the destination
+ * with partially written contents. The directory is not synced after the rename, so the rename itself may still be lost in a crash.
+ * 
+ * Writes can also be queued with writeAsync(), in which case they are performed by a single background thread.
+ * If several writes to the same file are queued before the thread gets to them, only the last one is performed.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USFileWriter writer = new USFileWriter( true );
+ * 		writer.write( pdfFile, header, body );
+ * 		Future<File> thumbnail = writer.writeAsync( thumbnailFile, thumbnailBytes );
+ * </code>
+ * 
+ * Note that on some platforms (Windows) a file can't be renamed over an existing file.
+ * The destination is then first renamed to a backup file, which is renamed back if the new file can't be put in its place.
+ * The replacement is then not atomic, readers may briefly find no file at the destination.
+ * 
+ * Instances are thread safe.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USFileWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger( USFileWriter.class );
+
+	/**
+	 * Size of the buffer used when writing from a stream.
+	 */
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
+	/**
+	 * True if data should be forced to the storage device before a write completes.
+	 */
+	private final boolean _forceToDisk;
+
+	/**
+	 * Queued writes that have not been started, keyed by absolute destination file.
+	 */
+	private final Map<File, PendingWrite> _pending = new LinkedHashMap<File, PendingWrite>();
+
+	/**
+	 * True if a task to perform the queued writes has been submitted, but has not finished.
+	 */
+	private boolean _drainScheduled;
+
+	/**
+	 * The thread that performs queued writes, created on first use.
+	 */
+	private ExecutorService _executor;
+
+	/**
+	 * True once close() has been called.
+	 */
+	private boolean _closed;
+
+	/**
+	 * Performs queued writes until there are none left.
+	 */
+	private final Runnable _drainTask = new Runnable() {
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Constructs a new writer.
+	 * 
+	 * @param forceToDisk If true, the data of each write is forced to the storage device (fsync) before the temporary file is renamed.
+	 */
+	public USFileWriter( boolean forceToDisk ) {
+		_forceToDisk = forceToDisk;
+	}
+
+	/**
+	 * Atomically replaces the contents of the destination file with the given bytes.
+	 * 
+	 * @param destination The file to write to.
+	 * @param bytes The bytes to write.
+	 * @throws IOException if the file could not be written. The destination is then left unchanged.
+	 */
+	public void write( File destination, byte[] bytes ) throws IOException {
+		write( destination, ByteBuffer.wrap( bytes ) );
+	}
+
+	/**
+	 * Atomically replaces the contents of the destination file with the remaining contents of the given buffers, using a single gathering write where possible.
+	 * The positions of the given buffers are not changed.
+	 * 
+	 * @param destination The file to write to.
+	 * @param buffers The buffers to write, in order.
+	 * @throws IOException if the file could not be written. The destination is then left unchanged.
+	 */
+	public void write( File destination, ByteBuffer... buffers ) throws IOException {
+		ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+
+		for( int i = 0; i < buffers.length; i++ ) {
+			duplicates[i] = buffers[i].duplicate();
+		}
+
+		File temporaryFile = createTemporaryFile( destination );
+		boolean written = false;
+
+		try {
+			FileOutputStream out = new FileOutputStream( temporaryFile );
+
+			try {
+				FileChannel channel = out.getChannel();
+
+				// A gathering write may write only part of the buffers.
+				while( hasRemaining( duplicates ) ) {
+					channel.write( duplicates );
+				}
+
+				if( _forceToDisk ) {
+					channel.force( true );
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			replace( temporaryFile, destination );
+			written = true;
+		}
+		finally {
+			if( !written ) {
+				temporaryFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Atomically replaces the contents of the destination file with all data read from the given stream. The stream is not closed.
+	 * 
+	 * @param destination The file to write to.
+	 * @param in The stream to read the data from.
+	 * @throws IOException if reading the stream or writing the file failed. The destination is then left unchanged.
+	 */
+	public void write( File destination, InputStream in ) throws IOException {
+		File temporaryFile = createTemporaryFile( destination );
+		boolean written = false;
+
+		try {
+			FileOutputStream out = new FileOutputStream( temporaryFile );
+
+			try {
+				FileChannel channel = out.getChannel();
+				ReadableByteChannel source = Channels.newChannel( in );
+				ByteBuffer buffer = ByteBuffer.allocateDirect( STREAM_BUFFER_SIZE );
+
+				while( source.read( buffer ) != -1 ) {
+					buffer.flip();
+
+					while( buffer.hasRemaining() ) {
+						channel.write( buffer );
+					}
+
+					buffer.clear();
+				}
+
+				if( _forceToDisk ) {
+					channel.force( true );
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			replace( temporaryFile, destination );
+			written = true;
+		}
+		finally {
+			if( !written ) {
+				temporaryFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Queues an atomic write of the given bytes to the destination file, to be performed on a background thread.
+	 * 
+	 * @see #writeAsync(File, ByteBuffer...)
+	 */
+	public Future<File> writeAsync( File destination, byte[] bytes ) {
+		return writeAsync( destination, ByteBuffer.wrap( bytes ) );
+	}
+
+	/**
+	 * Queues an atomic write of the given buffers to the destination file, to be performed on a background thread.
+	 * 
+	 * If a write to the same file is already queued but has not been started, it's replaced by this one,
+	 * and both callers get the same Future. The buffers must not be modified until the write has completed.
+	 * 
+	 * @param destination The file to write to.
+	 * @param buffers The buffers to write, in order.
+	 * @return A Future that completes with the destination file when the write is done, or with an IOException if it failed.
+	 * @throws RejectedExecutionException if the writer has been closed.
+	 */
+	public Future<File> writeAsync( File destination, ByteBuffer... buffers ) {
+		File key = destination.getAbsoluteFile();
+
+		synchronized( _pending ) {
+			if( _closed ) {
+				throw new RejectedExecutionException( "The writer has been closed" );
+			}
+
+			PendingWrite pending = _pending.get( key );
+
+			if( pending != null ) {
+				pending.buffers = buffers;
+				return pending.future;
+			}
+
+			pending = new PendingWrite( key, buffers );
+			_pending.put( key, pending );
+
+			if( !_drainScheduled ) {
+				_drainScheduled = true;
+				executor().execute( _drainTask );
+			}
+
+			return pending.future;
+		}
+	}
+
+	/**
+	 * Performs all queued writes and stops the background thread, waiting for the writes to complete.
+	 * Writes queued after this method is called are rejected.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void close() throws InterruptedException {
+		ExecutorService executor;
+
+		synchronized( _pending ) {
+			_closed = true;
+			executor = _executor;
+		}
+
+		if( executor != null ) {
+			executor.shutdown();
+			executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	/**
+	 * Performs queued writes until the queue is empty. Writes queued while a batch is being written are performed in the next batch.
+	 */
+	private void drain() {
+
+		while( true ) {
+			List<PendingWrite> batch;
+
+			synchronized( _pending ) {
+				if( _pending.isEmpty() ) {
+					_drainScheduled = false;
+					return;
+				}
+
+				batch = new ArrayList<PendingWrite>( _pending.values() );
+				_pending.clear();
+			}
+
+			for( PendingWrite pending : batch ) {
+				pending.future.run();
+			}
+		}
+	}
+
+	/**
+	 * @return The executor for queued writes, creating it if required. Must be called while synchronized on _pending.
+	 */
+	private ExecutorService executor() {
+
+		if( _executor == null ) {
+			_executor = Executors.newSingleThreadExecutor( new ThreadFactory() {
+				public Thread newThread( Runnable runnable ) {
+					Thread thread = new Thread( runnable, "USFileWriter" );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+
+		return _executor;
+	}
+
+	/**
+	 * @return A new, empty file in the same directory as the given destination, so it can be renamed to the destination.
+	 */
+	private static File createTemporaryFile( File destination ) throws IOException {
+		File directory = destination.getAbsoluteFile().getParentFile();
+		return File.createTempFile( "." + destination.getName() + ".", ".tmp", directory );
+	}
+
+	/**
+	 * Renames the temporary file to the destination, replacing it.
+	 * 
+	 * If the destination can't be replaced directly, it's moved to a backup file first, and moved back if the temporary file can't take its place.
+	 * The existing contents are therefore never deleted before the new contents are in place.
+	 */
+	private static void replace( File temporaryFile, File destination ) throws IOException {
+
+		if( temporaryFile.renameTo( destination ) ) {
+			return;
+		}
+
+		if( !destination.exists() ) {
+			throw new IOException( "Could not rename " + temporaryFile + " to " + destination );
+		}
+
+		// Some platforms can't rename over an existing file.
+		File backup = File.createTempFile( "." + destination.getName() + ".", ".bak", destination.getAbsoluteFile().getParentFile() );
+		backup.delete();
+
+		if( !destination.renameTo( backup ) ) {
+			throw new IOException( "Could not rename " + temporaryFile + " to " + destination );
+		}
+
+		if( temporaryFile.renameTo( destination ) ) {
+			if( !backup.delete() ) {
+				logger.warn( "Could not delete backup file: " + backup );
+			}
+
+			return;
+		}
+
+		if( !backup.renameTo( destination ) ) {
+			throw new IOException( "Could not rename " + temporaryFile + " to " + destination + ", and the previous contents could not be restored from " + backup );
+		}
+
+		throw new IOException( "Could not rename " + temporaryFile + " to " + destination );
+	}
+
+	/**
+	 * @return true if any of the buffers has remaining content.
+	 */
+	private static boolean hasRemaining( ByteBuffer[] buffers ) {
+		for( ByteBuffer buffer : buffers ) {
+			if( buffer.hasRemaining() ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		synchronized( _pending ) {
+			return getClass().getSimpleName() + " - forceToDisk: " + _forceToDisk + " - pending: " + _pending.size();
+		}
+	}
+
+	/**
+	 * A queued write. The buffers may be replaced by a later write to the same file until the write is removed from the queue.
+	 */
+	private class PendingWrite implements Callable<File> {
+		final File destination;
+		final FutureTask<File> future;
+		ByteBuffer[] buffers;
+
+		PendingWrite( File destination, ByteBuffer[] buffers ) {
+			this.destination = destination;
+			this.buffers = buffers;
+			this.future = new FutureTask<File>( this );
+		}
+
+		public File call() throws IOException {
+			write( destination, buffers );
+			return destination;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package is.us.util;
+
+import java.io.*;
+
+/**
+ * A writer that escapes characters using the escapeChart mapping of USStringUtilities.escapeHTML() as they are written.
+ * 
+ * Runs of characters that don't need escaping are passed directly to the underlying writer,
+ * so memory use does not depend on the amount of text written.
+ * The underlying writer should be buffered if many small writes are expected.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		Writer writer = new USHTMLEscapingWriter( new BufferedWriter( new OutputStreamWriter( out, "UTF-8" ) ) );
+ * 		writer.write( userSubmittedText );
+ * 		writer.flush();
+ * </code>
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USHTMLEscapingWriter extends FilterWriter {
+
+	/**
+	 * Constructs a new escaping writer.
+	 * 
+	 * @param out The writer to write escaped characters to.
+	 */
+	public USHTMLEscapingWriter( Writer out ) {
+		super( out );
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		String escaped = USStringUtilities.escapedHTMLForChar( (char)c );
+
+		if( escaped != null ) {
+			out.write( escaped );
+		}
+		else {
+			out.write( c );
+		}
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		int end = off + len;
+		int runStart = off;
+
+		for( int i = off; i < end; i++ ) {
+			String escaped = USStringUtilities.escapedHTMLForChar( cbuf[i] );
+
+			if( escaped != null ) {
+				if( i > runStart ) {
+					out.write( cbuf, runStart, i - runStart );
+				}
+
+				out.write( escaped );
+				runStart = i + 1;
+			}
+		}
+
+		if( end > runStart ) {
+			out.write( cbuf, runStart, end - runStart );
+		}
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		int end = off + len;
+		int runStart = off;
+
+		for( int i = off; i < end; i++ ) {
+			String escaped = USStringUtilities.escapedHTMLForChar( str.charAt( i ) );
+
+			if( escaped != null ) {
+				if( i > runStart ) {
+					out.write( str, runStart, i - runStart );
+				}
+
+				out.write( escaped );
+				runStart = i + 1;
+			}
+		}
+
+		if( end > runStart ) {
+			out.write( str, runStart, end - runStart );
+		}
+	}
+}
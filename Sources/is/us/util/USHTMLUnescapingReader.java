@@ -0,0 +1,202 @@
+package is.us.util;
+
+import java.io.*;
+import java.nio.CharBuffer;
+
+/**
+ * A reader that decodes HTML character references as they are read, the same way USStringUtilities.unescapeHTML() does.
+ * 
+ * Characters are read from the underlying reader in fixed-size chunks, so memory use does not depend on the amount of text read.
+ * References split between two chunks are decoded correctly.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		Reader reader = new USHTMLUnescapingReader( new InputStreamReader( in, "UTF-8" ) );
+ * </code>
+ * 
+ * Mark and reset are not supported.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USHTMLUnescapingReader extends FilterReader {
+
+	/**
+	 * Size of the chunks read from the underlying reader.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Characters read from the underlying reader, but not yet decoded.
+	 */
+	private final char[] _buffer = new char[BUFFER_SIZE];
+
+	/**
+	 * _buffer, as a CharSequence for the decoder.
+	 */
+	private final CharBuffer _bufferSequence = CharBuffer.wrap( _buffer );
+
+	/**
+	 * Index of the next character to decode in _buffer.
+	 */
+	private int _position;
+
+	/**
+	 * Number of characters in _buffer.
+	 */
+	private int _limit;
+
+	/**
+	 * True if the underlying reader has reached the end of the stream.
+	 */
+	private boolean _endOfStream;
+
+	/**
+	 * The characters of the last decoded reference.
+	 */
+	private final StringBuilder _decoded = new StringBuilder( 4 );
+
+	/**
+	 * Number of characters from _decoded that have been returned.
+	 */
+	private int _decodedPosition;
+
+	/**
+	 * Buffer used by read() and skip().
+	 */
+	private final char[] _readBuffer = new char[256];
+
+	/**
+	 * Constructs a new unescaping reader.
+	 * 
+	 * @param in The reader to read escaped characters from.
+	 */
+	public USHTMLUnescapingReader( Reader in ) {
+		super( in );
+	}
+
+	@Override
+	public int read() throws IOException {
+		int count = read( _readBuffer, 0, 1 );
+		return (count == -1) ? -1 : _readBuffer[0];
+	}
+
+	@Override
+	public int read( char[] cbuf, int off, int len ) throws IOException {
+
+		if( len == 0 ) {
+			return 0;
+		}
+
+		int count = 0;
+
+		while( count < len ) {
+			if( _decodedPosition < _decoded.length() ) {
+				cbuf[off + count++] = _decoded.charAt( _decodedPosition++ );
+				continue;
+			}
+
+			int available = _limit - _position;
+
+			// A reference must be complete in the buffer before it can be decoded.
+			if( available == 0 || (!_endOfStream && _buffer[_position] == '&' && available < USHTMLEntityDecoder.MAXIMUM_ENTITY_LENGTH) ) {
+				if( (_endOfStream && available == 0) || count > 0 ) {
+					break;
+				}
+
+				fill();
+				continue;
+			}
+
+			if( _buffer[_position] == '&' ) {
+				_decoded.setLength( 0 );
+				_decodedPosition = 0;
+				int entityEnd = USHTMLEntityDecoder.decodeEntity( _bufferSequence, _position, _limit, _decoded );
+
+				if( entityEnd == -1 ) {
+					cbuf[off + count++] = '&';
+					_position++;
+				}
+				else {
+					_position = entityEnd;
+				}
+			}
+			else {
+				int runEnd = _position + 1;
+				int maximumRunEnd = _position + Math.min( available, len - count );
+
+				while( runEnd < maximumRunEnd && _buffer[runEnd] != '&' ) {
+					runEnd++;
+				}
+
+				System.arraycopy( _buffer, _position, cbuf, off + count, runEnd - _position );
+				count += runEnd - _position;
+				_position = runEnd;
+			}
+		}
+
+		return (count == 0) ? -1 : count;
+	}
+
+	@Override
+	public long skip( long n ) throws IOException {
+
+		if( n < 0 ) {
+			throw new IllegalArgumentException( "skip value is negative" );
+		}
+
+		long remaining = n;
+
+		while( remaining > 0 ) {
+			int count = read( _readBuffer, 0, (int)Math.min( remaining, _readBuffer.length ) );
+
+			if( count == -1 ) {
+				break;
+			}
+
+			remaining -= count;
+		}
+
+		return n - remaining;
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		return _decodedPosition < _decoded.length() || _position < _limit || in.ready();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark( int readAheadLimit ) throws IOException {
+		throw new IOException( "mark() not supported" );
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException( "reset() not supported" );
+	}
+
+	/**
+	 * Moves the remaining characters to the start of the buffer and reads more characters from the underlying reader.
+	 */
+	private void fill() throws IOException {
+		int remaining = _limit - _position;
+		System.arraycopy( _buffer, _position, _buffer, 0, remaining );
+		_position = 0;
+		_limit = remaining;
+
+		int count = in.read( _buffer, _limit, _buffer.length - _limit );
+
+		if( count == -1 ) {
+			_endOfStream = true;
+		}
+		else {
+			_limit += count;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+package is.us.util;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.*;
+
+/**
+ * Fetches documents from URLs, with timeouts, gzip compression and latency statistics for each host.
+ * 
+ * Connections are reused through the keep-alive cache of HttpURLConnection, which requires each response to be read
+ * completely and its stream closed. This client always does so, also for error responses.
+ * 
+ * Responses are read into a buffer presized from the Content-Length header, if present.
+ * 
+ * Statistics are kept for a limited number of hosts (256 unless given to the constructor), the first ones requests are made to.
+ * Requests to further hosts are not included, so a client used for many hosts doesn't keep growing.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		byte[] document = USHTTPClient.sharedClient().readBytes( "http://www.us.is/" );
+ * 		USHTTPClient.HostStatistics statistics = USHTTPClient.sharedClient().statisticsForHost( "www.us.is" );
+ * </code>
+ * 
+ * Instances are thread safe.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USHTTPClient {
+
+	private static final Logger logger = LoggerFactory.getLogger( USHTTPClient.class );
+
+	/**
+	 * Default timeout for establishing a connection, in milliseconds.
+	 */
+	private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * Default timeout for reading from a connection, in milliseconds.
+	 */
+	private static final int DEFAULT_READ_TIMEOUT = 30000;
+
+	/**
+	 * Largest buffer allocated up front for a response, in bytes. Larger responses grow the buffer as they arrive,
+	 * so a server can't force a large allocation just by sending a large Content-Length header.
+	 */
+	private static final int MAXIMUM_PRESIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Default maximum number of hosts statistics are kept for.
+	 */
+	private static final int DEFAULT_MAXIMUM_TRACKED_HOSTS = 256;
+
+	/**
+	 * The client used by USDataUtilities and USStringUtilities.
+	 */
+	private static final USHTTPClient _sharedClient = new USHTTPClient( DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT );
+
+	/**
+	 * Timeout for establishing a connection, in milliseconds.
+	 */
+	private final int _connectTimeout;
+
+	/**
+	 * Timeout for reading from a connection, in milliseconds.
+	 */
+	private final int _readTimeout;
+
+	/**
+	 * Maximum number of hosts statistics are kept for. Requests to further hosts are not included in the statistics.
+	 */
+	private final int _maximumTrackedHosts;
+
+	/**
+	 * Statistics for each host requests have been made to.
+	 */
+	private final ConcurrentHashMap<String, HostStatistics> _statistics = new ConcurrentHashMap<String, HostStatistics>();
+
+	/**
+	 * Constructs a new client, keeping statistics for up to 256 hosts.
+	 * 
+	 * @param connectTimeout Timeout for establishing a connection, in milliseconds. Zero means no timeout.
+	 * @param readTimeout Timeout for reading from a connection, in milliseconds. Zero means no timeout.
+	 */
+	public USHTTPClient( int connectTimeout, int readTimeout ) {
+		this( connectTimeout, readTimeout, DEFAULT_MAXIMUM_TRACKED_HOSTS );
+	}
+
+	/**
+	 * Constructs a new client.
+	 * 
+	 * @param connectTimeout Timeout for establishing a connection, in milliseconds. Zero means no timeout.
+	 * @param readTimeout Timeout for reading from a connection, in milliseconds. Zero means no timeout.
+	 * @param maximumTrackedHosts Maximum number of hosts to keep statistics for. Once reached, requests to other hosts are not included in the statistics. Zero disables statistics.
+	 */
+	public USHTTPClient( int connectTimeout, int readTimeout, int maximumTrackedHosts ) {
+
+		if( connectTimeout < 0 || readTimeout < 0 ) {
+			throw new IllegalArgumentException( "Timeouts can't be negative" );
+		}
+
+		if( maximumTrackedHosts < 0 ) {
+			throw new IllegalArgumentException( "The maximum number of tracked hosts can't be negative" );
+		}
+
+		_connectTimeout = connectTimeout;
+		_readTimeout = readTimeout;
+		_maximumTrackedHosts = maximumTrackedHosts;
+	}
+
+	/**
+	 * The client shared by USDataUtilities and USStringUtilities, with a connect timeout of 10 seconds and a read timeout of 30 seconds.
+	 */
+	public static USHTTPClient sharedClient() {
+		return _sharedClient;
+	}
+
+	/**
+	 * Fetches the document at the given URL.
+	 * 
+	 * @param sourceURL The URL to fetch.
+	 * @return The document.
+	 * @throws IOException if the document could not be fetched, or the server responded with an error status.
+	 */
+	public byte[] readBytes( String sourceURL ) throws IOException {
+		URL url = new URL( sourceURL );
+		long start = System.nanoTime();
+		boolean succeeded = false;
+
+		try {
+			URLConnection connection = url.openConnection();
+			connection.setConnectTimeout( _connectTimeout );
+			connection.setReadTimeout( _readTimeout );
+			connection.setRequestProperty( "Accept-Encoding", "gzip" );
+
+			byte[] bytes = readResponse( connection );
+			succeeded = true;
+			return bytes;
+		}
+		finally {
+			if( url.getHost() != null && url.getHost().length() > 0 ) {
+				HostStatistics statistics = statisticsForHostCreatingIfNeeded( url.getHost() );
+
+				if( statistics != null ) {
+					statistics.record( System.nanoTime() - start, succeeded );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fetches the document at the given URL as a string.
+	 * 
+	 * @param sourceURL The URL to fetch.
+	 * @param charset The charset of the document, if null UTF-8 is used.
+	 * @return The document.
+	 * @throws IOException if the document could not be fetched, or the server responded with an error status.
+	 */
+	public String readString( String sourceURL, Charset charset ) throws IOException {
+		return new String( readBytes( sourceURL ), (charset != null) ? charset.name() : "UTF-8" );
+	}
+
+	/**
+	 * Reads the complete response from the given connection, and closes its stream.
+	 */
+	private static byte[] readResponse( URLConnection connection ) throws IOException {
+		InputStream in;
+
+		try {
+			in = connection.getInputStream();
+		}
+		catch( IOException e ) {
+			// Reading the error response allows the connection to be reused.
+			if( connection instanceof HttpURLConnection ) {
+				discard( ((HttpURLConnection)connection).getErrorStream() );
+			}
+
+			throw e;
+		}
+
+		try {
+			boolean gzipped = "gzip".equalsIgnoreCase( connection.getContentEncoding() );
+			int contentLength = connection.getContentLength();
+			InputStream stream = (gzipped) ? new GZIPInputStream( in ) : in;
+			int lengthHint = (!gzipped && contentLength >= 0) ? Math.min( contentLength, MAXIMUM_PRESIZE ) : 0;
+
+			byte[] bytes = readFully( stream, lengthHint );
+
+			if( !gzipped && contentLength >= 0 && bytes.length != contentLength ) {
+				throw new IOException( "Expected " + contentLength + " bytes from " + connection.getURL() + " but got " + bytes.length );
+			}
+
+			return bytes;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return All bytes read from the stream, in a buffer presized using the given hint.
+	 */
+	private static byte[] readFully( InputStream in, int lengthHint ) throws IOException {
+		ByteBuffer buffer = USDataUtilities.readFully( in, lengthHint );
+		byte[] bytes = buffer.array();
+		return (bytes.length == buffer.limit()) ? bytes : Arrays.copyOf( bytes, buffer.limit() );
+	}
+
+	/**
+	 * Reads and closes the given stream, ignoring any errors.
+	 */
+	private static void discard( InputStream in ) {
+
+		if( in == null ) {
+			return;
+		}
+
+		try {
+			byte[] buffer = new byte[1024];
+
+			while( in.read( buffer ) != -1 ) {}
+
+			in.close();
+		}
+		catch( IOException e ) {
+			logger.debug( "Failed to discard error response", e );
+		}
+	}
+
+	/**
+	 * Timeout for establishing a connection, in milliseconds.
+	 */
+	public int connectTimeout() {
+		return _connectTimeout;
+	}
+
+	/**
+	 * Timeout for reading from a connection, in milliseconds.
+	 */
+	public int readTimeout() {
+		return _readTimeout;
+	}
+
+	/**
+	 * @return Statistics for requests to the given host, or null if no requests to it have been tracked (or if host is null).
+	 */
+	public HostStatistics statisticsForHost( String host ) {
+
+		if( host == null ) {
+			return null;
+		}
+
+		return _statistics.get( host.toLowerCase( Locale.ENGLISH ) );
+	}
+
+	/**
+	 * Maximum number of hosts statistics are kept for.
+	 */
+	public int maximumTrackedHosts() {
+		return _maximumTrackedHosts;
+	}
+
+	/**
+	 * @return Statistics for each host requests have been made to, keyed by host name.
+	 */
+	public Map<String, HostStatistics> statistics() {
+		return Collections.unmodifiableMap( new TreeMap<String, HostStatistics>( _statistics ) );
+	}
+
+	/**
+	 * Discards all collected statistics.
+	 */
+	public void resetStatistics() {
+		_statistics.clear();
+	}
+
+	/**
+	 * @return Statistics for the given host, created if required. Null if the host isn't tracked and the maximum number of tracked hosts has been reached.
+	 */
+	private HostStatistics statisticsForHostCreatingIfNeeded( String host ) {
+		String key = host.toLowerCase( Locale.ENGLISH );
+		HostStatistics statistics = _statistics.get( key );
+
+		if( statistics == null ) {
+			// Concurrent requests to new hosts may overshoot the maximum slightly.
+			if( _statistics.size() >= _maximumTrackedHosts ) {
+				return null;
+			}
+
+			HostStatistics newStatistics = new HostStatistics( key );
+			statistics = _statistics.putIfAbsent( key, newStatistics );
+
+			if( statistics == null ) {
+				statistics = newStatistics;
+			}
+		}
+
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " - connectTimeout: " + _connectTimeout + " - readTimeout: " + _readTimeout + " - hosts: " + _statistics.size();
+	}
+
+	/**
+	 * Request counts and latencies for a single host. Latency is measured from opening the connection until the complete response has been read.
+	 */
+	public static class HostStatistics {
+		private final String _host;
+		private long _requests;
+		private long _failures;
+		private long _totalLatency;
+		private long _maximumLatency;
+
+		private HostStatistics( String host ) {
+			_host = host;
+		}
+
+		private synchronized void record( long latency, boolean succeeded ) {
+			_requests++;
+			_totalLatency += latency;
+			_maximumLatency = Math.max( _maximumLatency, latency );
+
+			if( !succeeded ) {
+				_failures++;
+			}
+		}
+
+		/**
+		 * The host these statistics are for.
+		 */
+		public String host() {
+			return _host;
+		}
+
+		/**
+		 * Number of requests made to the host.
+		 */
+		public synchronized long requests() {
+			return _requests;
+		}
+
+		/**
+		 * Number of requests to the host that failed.
+		 */
+		public synchronized long failures() {
+			return _failures;
+		}
+
+		/**
+		 * Average latency of requests to the host, in milliseconds.
+		 */
+		public synchronized double averageLatencyMillis() {
+			return (_requests > 0) ? _totalLatency / (double)_requests / 1000000 : 0;
+		}
+
+		/**
+		 * Maximum latency of requests to the host, in milliseconds.
+		 */
+		public synchronized double maximumLatencyMillis() {
+			return _maximumLatency / 1000000d;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return getClass().getSimpleName() + " - host: " + _host + " - requests: " + _requests + " - failures: " + _failures + " - average: " + averageLatencyMillis() + " ms - maximum: " + maximumLatencyMillis() + " ms";
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package is.us.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A named set of holiday rules (see USHolidayRule), used to check if days are holidays or workdays.
+ * 
+ * The rules are compiled into a table for each year on first use, holding the holidays as bitsets indexed by day of year
+ * along with running totals of workdays, so lookups take constant time and do not create objects.
+ * Tables are cached for the years 1900 to 2199. Tables for other years are compiled on each lookup.
+ * 
+ * Calendars can be registered by name, and looked up with calendarNamed(). The Icelandic calendar (see USHolidays) is registered as "is", which can't be replaced or removed.
+ * To add holidays to a calendar, such as municipal days, create a new one with withRules().
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USHolidayCalendar reykjavik = USHolidayCalendar.ICELANDIC.withRules( "is-reykjavik", USHolidayRule.fixed( "Menningarnótt", 8, 24 ) );
+ * 		USHolidayCalendar.register( reykjavik );
+ * 		boolean workday = USHolidayCalendar.calendarNamed( "is-reykjavik" ).isWorkday( USDateUtilities.epochDay( date ) );
+ * </code>
+ * 
+ * Days are given as epoch days (see USDateUtilities.epochDay()). Saturdays and Sundays are never workdays.
+ * 
+ * Calendars are immutable and thread safe.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USHolidayCalendar {
+
+	private static final int FIRST_CACHED_YEAR = 1900;
+	private static final int NUMBER_OF_CACHED_YEARS = 300;
+	private static final int FIRST_CACHED_DAY = USDateUtilities.epochDay( FIRST_CACHED_YEAR, 1, 1 );
+	private static final int END_OF_CACHED_DAYS = USDateUtilities.epochDay( FIRST_CACHED_YEAR + NUMBER_OF_CACHED_YEARS, 1, 1 );
+
+	/**
+	 * Holidays according to current Icelandic laws. The rules are listed in USHolidays.
+	 */
+	public static final USHolidayCalendar ICELANDIC = new USHolidayCalendar( "is", USHolidays.ICELANDIC_RULES );
+
+	/**
+	 * Registered calendars, keyed by name.
+	 */
+	private static final ConcurrentHashMap<String, USHolidayCalendar> _calendars = new ConcurrentHashMap<String, USHolidayCalendar>();
+
+	static {
+		register( ICELANDIC );
+	}
+
+	private final String _name;
+	private final List<USHolidayRule> _rules;
+
+	/**
+	 * Compiled tables for the cached years. Two threads may compile the table for the same year at the same time, in which case one of them is kept.
+	 */
+	private final AtomicReferenceArray<YearTable> _tables = new AtomicReferenceArray<YearTable>( NUMBER_OF_CACHED_YEARS );
+
+	/**
+	 * Number of workdays from the first cached year before each cached year, with the total as the last element. Built on first use.
+	 */
+	private volatile int[] _workdaysBeforeYear;
+
+	/**
+	 * Constructs a new calendar.
+	 * 
+	 * @param name The name of the calendar.
+	 * @param rules The rules that determine the holidays.
+	 */
+	public USHolidayCalendar( String name, List<USHolidayRule> rules ) {
+
+		if( name == null ) {
+			throw new IllegalArgumentException( "A holiday calendar must have a name" );
+		}
+
+		_name = name;
+		_rules = Collections.unmodifiableList( new ArrayList<USHolidayRule>( rules ) );
+	}
+
+	/**
+	 * @return The calendar registered with the given name, or null if there is none.
+	 */
+	public static USHolidayCalendar calendarNamed( String name ) {
+		return _calendars.get( name );
+	}
+
+	/**
+	 * Registers the given calendar under its name, replacing any calendar previously registered with the same name.
+	 * 
+	 * @throws IllegalArgumentException if the calendar is named "is" but isn't ICELANDIC, since that name always refers to the calendar used by USHolidays.
+	 */
+	public static void register( USHolidayCalendar calendar ) {
+
+		if( calendar != ICELANDIC && ICELANDIC.name().equals( calendar.name() ) ) {
+			throw new IllegalArgumentException( "The calendar \"" + ICELANDIC.name() + "\" can't be replaced" );
+		}
+
+		_calendars.put( calendar.name(), calendar );
+	}
+
+	/**
+	 * Removes the calendar registered with the given name, if any.
+	 * 
+	 * @throws IllegalArgumentException if the name is "is", the name of ICELANDIC.
+	 */
+	public static void unregister( String name ) {
+
+		if( ICELANDIC.name().equals( name ) ) {
+			throw new IllegalArgumentException( "The calendar \"" + ICELANDIC.name() + "\" can't be removed" );
+		}
+
+		_calendars.remove( name );
+	}
+
+	/**
+	 * @return The names of all registered calendars, sorted.
+	 */
+	public static Set<String> calendarNames() {
+		return Collections.unmodifiableSet( new TreeSet<String>( _calendars.keySet() ) );
+	}
+
+	/**
+	 * @return A new calendar with the given name, with the rules of this calendar and the given additional rules.
+	 */
+	public USHolidayCalendar withRules( String name, USHolidayRule... additionalRules ) {
+		List<USHolidayRule> rules = new ArrayList<USHolidayRule>( _rules );
+		rules.addAll( Arrays.asList( additionalRules ) );
+		return new USHolidayCalendar( name, rules );
+	}
+
+	/**
+	 * The name of the calendar.
+	 */
+	public String name() {
+		return _name;
+	}
+
+	/**
+	 * The rules that determine the holidays.
+	 */
+	public List<USHolidayRule> rules() {
+		return _rules;
+	}
+
+	/**
+	 * Returns true if the given epoch day is a holiday, full or partial.
+	 */
+	public boolean isHoliday( int epochDay ) {
+		YearTable table = tableForEpochDay( epochDay );
+		int dayOfYear = epochDay - table.firstDay;
+		return isSet( table.fullHolidays, dayOfYear ) || isSet( table.partialHolidays, dayOfYear );
+	}
+
+	/**
+	 * Returns true if the given epoch day is a full holiday.
+	 */
+	public boolean isFullHoliday( int epochDay ) {
+		YearTable table = tableForEpochDay( epochDay );
+		return isSet( table.fullHolidays, epochDay - table.firstDay );
+	}
+
+	/**
+	 * Returns true if the given epoch day is a partial holiday.
+	 */
+	public boolean isPartialHoliday( int epochDay ) {
+		YearTable table = tableForEpochDay( epochDay );
+		return isSet( table.partialHolidays, epochDay - table.firstDay );
+	}
+
+	/**
+	 * Returns true if the given epoch day is not on a weekend, and is not a full holiday.
+	 */
+	public boolean isWorkday( int epochDay ) {
+		return !USDateUtilities.isWeekend( epochDay ) && !isFullHoliday( epochDay );
+	}
+
+	/**
+	 * Counts the workdays from one epoch day up to, but not including, another.
+	 * Uses running totals of workdays, so the time taken does not depend on the length of the period.
+	 * 
+	 * @param fromEpochDay The first day to count.
+	 * @param toEpochDay The day after the last day to count.
+	 * @return The number of workdays, negative if toEpochDay is before fromEpochDay.
+	 * @throws IllegalArgumentException if either day is outside the years 1900 to 2199.
+	 */
+	public int workdaysBetween( int fromEpochDay, int toEpochDay ) {
+		return workdaysBefore( toEpochDay ) - workdaysBefore( fromEpochDay );
+	}
+
+	/**
+	 * Finds the workday the given number of workdays after (or before) the given epoch day.
+	 * The given day itself is not counted, so adding one workday gives the next workday after it.
+	 * Uses running totals of workdays, so the time taken does not depend on the number of workdays.
+	 * 
+	 * @param epochDay The day to count from.
+	 * @param workdays The number of workdays to add, use a negative number for subtraction. If zero, the given day is returned.
+	 * @return The epoch day of the resulting workday.
+	 * @throws IllegalArgumentException if the result or the given day is outside the years 1900 to 2199.
+	 */
+	public int addWorkdays( int epochDay, int workdays ) {
+
+		if( workdays > 0 ) {
+			return dayOfWorkday( workdaysBefore( epochDay + 1 ) + workdays - 1 );
+		}
+
+		if( workdays < 0 ) {
+			return dayOfWorkday( workdaysBefore( epochDay ) + workdays );
+		}
+
+		return epochDay;
+	}
+
+	/**
+	 * @return The number of workdays from the first cached day before the given day.
+	 */
+	private int workdaysBefore( int epochDay ) {
+
+		if( epochDay < FIRST_CACHED_DAY || epochDay > END_OF_CACHED_DAYS ) {
+			throw new IllegalArgumentException( "Workdays can only be calculated for the years " + FIRST_CACHED_YEAR + " to " + (FIRST_CACHED_YEAR + NUMBER_OF_CACHED_YEARS - 1) );
+		}
+
+		int[] workdaysBeforeYear = workdaysBeforeYear();
+
+		if( epochDay == END_OF_CACHED_DAYS ) {
+			return workdaysBeforeYear[NUMBER_OF_CACHED_YEARS];
+		}
+
+		YearTable table = tableForEpochDay( epochDay );
+		return workdaysBeforeYear[table.year - FIRST_CACHED_YEAR] + table.workdaysBefore[epochDay - table.firstDay];
+	}
+
+	/**
+	 * @return The epoch day of the workday with the given index, counted from the first cached day (zero based).
+	 */
+	private int dayOfWorkday( int workday ) {
+		int[] workdaysBeforeYear = workdaysBeforeYear();
+
+		if( workday < 0 || workday >= workdaysBeforeYear[NUMBER_OF_CACHED_YEARS] ) {
+			throw new IllegalArgumentException( "Workdays can only be calculated for the years " + FIRST_CACHED_YEAR + " to " + (FIRST_CACHED_YEAR + NUMBER_OF_CACHED_YEARS - 1) );
+		}
+
+		int low = 0;
+		int high = NUMBER_OF_CACHED_YEARS - 1;
+
+		// Find the last year that starts at or before the workday.
+		while( low < high ) {
+			int middle = (low + high + 1) >>> 1;
+
+			if( workdaysBeforeYear[middle] <= workday ) {
+				low = middle;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+
+		YearTable table = tableForYear( FIRST_CACHED_YEAR + low );
+		workday -= workdaysBeforeYear[low];
+		low = 0;
+		high = table.length - 1;
+
+		// Find the first day with more than [workday] workdays up to and including it.
+		while( low < high ) {
+			int middle = (low + high) >>> 1;
+
+			if( table.workdaysBefore[middle + 1] > workday ) {
+				high = middle;
+			}
+			else {
+				low = middle + 1;
+			}
+		}
+
+		return table.firstDay + low;
+	}
+
+	/**
+	 * @return Running totals of workdays for the cached years, building them if required. This compiles the tables for all the cached years.
+	 */
+	private int[] workdaysBeforeYear() {
+		int[] workdaysBeforeYear = _workdaysBeforeYear;
+
+		if( workdaysBeforeYear == null ) {
+			workdaysBeforeYear = new int[NUMBER_OF_CACHED_YEARS + 1];
+
+			for( int i = 0; i < NUMBER_OF_CACHED_YEARS; i++ ) {
+				YearTable table = tableForYear( FIRST_CACHED_YEAR + i );
+				workdaysBeforeYear[i + 1] = workdaysBeforeYear[i] + table.workdaysBefore[table.length];
+			}
+
+			_workdaysBeforeYear = workdaysBeforeYear;
+		}
+
+		return workdaysBeforeYear;
+	}
+
+	/**
+	 * @return The table for the year the given epoch day falls in.
+	 */
+	private YearTable tableForEpochDay( int epochDay ) {
+		return tableForYear( USDateUtilities.yearOfEpochDay( epochDay ) );
+	}
+
+	/**
+	 * @return The table for the given year.
+	 */
+	private YearTable tableForYear( int year ) {
+		int index = year - FIRST_CACHED_YEAR;
+
+		if( index < 0 || index >= NUMBER_OF_CACHED_YEARS ) {
+			return new YearTable( year, _rules );
+		}
+
+		YearTable table = _tables.get( index );
+
+		if( table == null ) {
+			table = new YearTable( year, _rules );
+
+			if( !_tables.compareAndSet( index, null, table ) ) {
+				table = _tables.get( index );
+			}
+		}
+
+		return table;
+	}
+
+	private static void set( long[] bits, int dayOfYear ) {
+		bits[dayOfYear >> 6] |= 1L << dayOfYear;
+	}
+
+	private static boolean isSet( long[] bits, int dayOfYear ) {
+		return (bits[dayOfYear >> 6] & (1L << dayOfYear)) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " - " + _name + " - rules: " + _rules.size();
+	}
+
+	/**
+	 * The holidays of a single year, compiled from the rules.
+	 */
+	private static class YearTable {
+		final int year;
+
+		/**
+		 * Epoch day of January 1st of the year.
+		 */
+		final int firstDay;
+
+		/**
+		 * Number of days in the year.
+		 */
+		final int length;
+
+		final long[] fullHolidays = new long[6];
+		final long[] partialHolidays = new long[6];
+
+		/**
+		 * Number of workdays in the year before each day of the year. The last element is the number of workdays in the year.
+		 */
+		final short[] workdaysBefore;
+
+		YearTable( int year, List<USHolidayRule> rules ) {
+			this.year = year;
+			firstDay = USDateUtilities.epochDay( year, 1, 1 );
+			length = USDateUtilities.epochDay( year + 1, 1, 1 ) - firstDay;
+
+			for( USHolidayRule rule : rules ) {
+				// A rule may put its day outside its own year, such as the first Monday after December 29th, so the neighbouring years are checked as well.
+				for( int ruleYear = year - 1; ruleYear <= year + 1; ruleYear++ ) {
+					int epochDay = rule.epochDay( ruleYear );
+
+					if( epochDay != USHolidayRule.NO_DAY && epochDay >= firstDay && epochDay < firstDay + length ) {
+						set( (rule.isPartial()) ? partialHolidays : fullHolidays, epochDay - firstDay );
+					}
+				}
+			}
+
+			workdaysBefore = new short[length + 1];
+
+			for( int dayOfYear = 0; dayOfYear < length; dayOfYear++ ) {
+				boolean workday = !USDateUtilities.isWeekend( firstDay + dayOfYear ) && !isSet( fullHolidays, dayOfYear );
+				workdaysBefore[dayOfYear + 1] = (short)(workdaysBefore[dayOfYear] + ((workday) ? 1 : 0));
+			}
+		}
+	}
+}
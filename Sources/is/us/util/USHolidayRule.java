@@ -0,0 +1,224 @@
+package is.us.util;
+
+/**
+ * A rule that determines the day of a holiday in any given year, for use in a USHolidayCalendar.
+ * 
+ * Three kinds of rules are supported:
+ * - fixed(): the same date every year, like Christmas Day.
+ * - easter(): a number of days before or after Easter Sunday, like Good Friday.
+ * - weekdayOnOrAfter(): the first given weekday on or after a date, like the first Monday in August.
+ * 
+ * A rule applies to every year unless limited with years(), for example when a holiday was introduced or abolished by law.
+ * Holidays last the whole day unless marked with partial(), like Christmas Eve, which only lasts the afternoon.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USHolidayRule trademensDay = USHolidayRule.weekdayOnOrAfter( "Trademen's Day", 8, 1, GregorianCalendar.MONDAY );
+ * 		USHolidayRule christmasEve = USHolidayRule.fixed( "Christmas Eve", 12, 24 ).partial();
+ * </code>
+ * 
+ * Rules are immutable and thread safe.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USHolidayRule {
+
+	/**
+	 * Returned by epochDay() for years the rule does not apply to.
+	 */
+	public static final int NO_DAY = Integer.MIN_VALUE;
+
+	/**
+	 * Maximum number of days in each month, February included with its length in leap years.
+	 */
+	private static final int[] MAXIMUM_DAYS_IN_MONTH = { 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	private static enum Kind {
+		FIXED, EASTER, WEEKDAY_ON_OR_AFTER
+	}
+
+	private final String _name;
+	private final Kind _kind;
+	private final int _month;
+	private final int _day;
+
+	/**
+	 * Number of days from Easter Sunday for EASTER rules, day of week for WEEKDAY_ON_OR_AFTER rules.
+	 */
+	private final int _parameter;
+
+	private final boolean _partial;
+	private final int _firstYear;
+	private final int _lastYear;
+
+	private USHolidayRule( String name, Kind kind, int month, int day, int parameter, boolean partial, int firstYear, int lastYear ) {
+
+		if( name == null ) {
+			throw new IllegalArgumentException( "A holiday rule must have a name" );
+		}
+
+		if( firstYear > lastYear ) {
+			throw new IllegalArgumentException( "The first year of a holiday rule can't be after its last year" );
+		}
+
+		_name = name;
+		_kind = kind;
+		_month = month;
+		_day = day;
+		_parameter = parameter;
+		_partial = partial;
+		_firstYear = firstYear;
+		_lastYear = lastYear;
+	}
+
+	/**
+	 * A holiday on the same day every year. A holiday on February 29th only occurs in leap years.
+	 * Month numbers are not zero-based! That means January = 1, December = 12.
+	 */
+	public static USHolidayRule fixed( String name, int month, int day ) {
+		checkMonthAndDay( month, day );
+		return new USHolidayRule( name, Kind.FIXED, month, day, 0, false, Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * A holiday the given number of days after Easter Sunday. Use a negative number for days before it, and 0 for Easter Sunday itself.
+	 */
+	public static USHolidayRule easter( String name, int daysAfterEaster ) {
+		return new USHolidayRule( name, Kind.EASTER, 0, 0, daysAfterEaster, false, Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * A holiday on the first given weekday on or after the given day.
+	 * Month numbers are not zero-based! That means January = 1, December = 12.
+	 * 
+	 * @param dayOfWeek One of the GregorianCalendar constants SUNDAY to SATURDAY.
+	 */
+	public static USHolidayRule weekdayOnOrAfter( String name, int month, int day, int dayOfWeek ) {
+		checkMonthAndDay( month, day );
+
+		if( dayOfWeek < 1 || dayOfWeek > 7 ) {
+			throw new IllegalArgumentException( "Invalid day of week: " + dayOfWeek );
+		}
+
+		return new USHolidayRule( name, Kind.WEEKDAY_ON_OR_AFTER, month, day, dayOfWeek, false, Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+
+	private static void checkMonthAndDay( int month, int day ) {
+		if( month < 1 || month > 12 || day < 1 || day > MAXIMUM_DAYS_IN_MONTH[month - 1] ) {
+			throw new IllegalArgumentException( "Invalid month and day: " + month + "/" + day );
+		}
+	}
+
+	/**
+	 * @return A copy of this rule for a holiday that only lasts part of the day.
+	 */
+	public USHolidayRule partial() {
+		return new USHolidayRule( _name, _kind, _month, _day, _parameter, true, _firstYear, _lastYear );
+	}
+
+	/**
+	 * @return A copy of this rule that only applies from firstYear to lastYear, both included.
+	 */
+	public USHolidayRule years( int firstYear, int lastYear ) {
+		return new USHolidayRule( _name, _kind, _month, _day, _parameter, _partial, firstYear, lastYear );
+	}
+
+	/**
+	 * The name of the holiday.
+	 */
+	public String name() {
+		return _name;
+	}
+
+	/**
+	 * True if the holiday only lasts part of the day.
+	 */
+	public boolean isPartial() {
+		return _partial;
+	}
+
+	/**
+	 * @return The epoch day (see USDateUtilities.epochDay()) of the holiday in the given year, or NO_DAY if the rule does not apply to the year.
+	 */
+	public int epochDay( int year ) {
+
+		if( year < _firstYear || year > _lastYear ) {
+			return NO_DAY;
+		}
+
+		switch( _kind ) {
+			case FIXED:
+				if( _month == 2 && _day == 29 && !isLeapYear( year ) ) {
+					return NO_DAY;
+				}
+
+				return USDateUtilities.epochDay( year, _month, _day );
+			case EASTER:
+				return easterSunday( year ) + _parameter;
+			default:
+				int epochDay = USDateUtilities.epochDay( year, _month, _day );
+				int daysToWeekday = _parameter - USDateUtilities.dayOfWeek( epochDay );
+				return epochDay + ((daysToWeekday < 0) ? daysToWeekday + 7 : daysToWeekday);
+		}
+	}
+
+	private static boolean isLeapYear( int year ) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	/**
+	 * The epoch day of Easter Sunday in the given year.
+	 * 
+	 * Borrowed from: http://www.smart.net/~mmontes/nature1876.html
+	 * 
+	 * Holds for any year in the Gregorian Calendar, which (of course) means years including and after 1583.
+	 */
+	public static int easterSunday( int year ) {
+		int a = year % 19;
+		int b = year / 100;
+		int c = year % 100;
+		int d = b / 4;
+		int e = b % 4;
+		int f = (b + 8) / 25;
+		int g = (b - f + 1) / 3;
+		int h = (19 * a + b - d - g + 15) % 30;
+		int i = c / 4;
+		int k = c % 4;
+		int l = (32 + 2 * e + 2 * i - h - k) % 7;
+		int m = (a + 11 * h + 22 * l) / 451;
+		int month = ((h + l - 7 * m + 114) / 31);
+		int p = (h + l - 7 * m + 114) % 31;
+		int day = p + 1;
+
+		return USDateUtilities.epochDay( year, month, day );
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append( getClass().getSimpleName() ).append( " - " ).append( _name ).append( " - " );
+
+		switch( _kind ) {
+			case FIXED:
+				b.append( _day ).append( '.' ).append( _month ).append( '.' );
+				break;
+			case EASTER:
+				b.append( "easter" ).append( (_parameter < 0) ? " - " : " + " ).append( Math.abs( _parameter ) );
+				break;
+			default:
+				b.append( "weekday " ).append( _parameter ).append( " on or after " ).append( _day ).append( '.' ).append( _month ).append( '.' );
+		}
+
+		if( _partial ) {
+			b.append( " - partial" );
+		}
+
+		if( _firstYear != Integer.MIN_VALUE || _lastYear != Integer.MAX_VALUE ) {
+			b.append( " - years: " ).append( _firstYear ).append( '-' ).append( _lastYear );
+		}
+
+		return b.toString();
+	}
+}
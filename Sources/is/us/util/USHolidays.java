@@ -8,6 +8,9 @@ import java.util.*;
  * 
  * Each holiday in this class indicates the start of the day.
  * 
+ * The holidays are defined by the rules in ICELANDIC_RULES, which make up the calendar USHolidayCalendar.ICELANDIC.
+ * The static methods check dates against that calendar.
+ * 
  * @issue INN-652
  * @author Hugi Þórðarson
  * @reviewedby Logi Helgu, Jun 24, 2009 
@@ -15,6 +18,27 @@ import java.util.*;
 
 public class USHolidays {
 
+	public static final USHolidayRule NEW_YEARS_DAY = USHolidayRule.fixed( "Nýársdagur", 1, 1 );
+	public static final USHolidayRule MAUNDY_THURSDAY = USHolidayRule.easter( "Skírdagur", -3 );
+	public static final USHolidayRule GOOD_FRIDAY = USHolidayRule.easter( "Föstudagurinn langi", -2 );
+	public static final USHolidayRule EASTER_DAY = USHolidayRule.easter( "Páskadagur", 0 );
+	public static final USHolidayRule EASTER_MONDAY = USHolidayRule.easter( "Annar í páskum", 1 );
+	public static final USHolidayRule FIRST_DAY_OF_SUMMER = USHolidayRule.weekdayOnOrAfter( "Sumardagurinn fyrsti", 4, 19, GregorianCalendar.THURSDAY );
+	public static final USHolidayRule FIRST_OF_MAY = USHolidayRule.fixed( "Verkalýðsdagurinn", 5, 1 );
+	public static final USHolidayRule ASCENSION_DAY = USHolidayRule.easter( "Uppstigningardagur", 39 );
+	public static final USHolidayRule WHITE_MONDAY = USHolidayRule.easter( "Annar í hvítasunnu", 50 );
+	public static final USHolidayRule SEVENTEENTH_OF_JUNE = USHolidayRule.fixed( "Þjóðhátíðardagurinn", 6, 17 );
+	public static final USHolidayRule TRADEMENS_DAY = USHolidayRule.weekdayOnOrAfter( "Frídagur verslunarmanna", 8, 1, GregorianCalendar.MONDAY );
+	public static final USHolidayRule CHRISTMAS_EVE = USHolidayRule.fixed( "Aðfangadagur", 12, 24 ).partial();
+	public static final USHolidayRule CHRISTMAS_DAY = USHolidayRule.fixed( "Jóladagur", 12, 25 );
+	public static final USHolidayRule BOXING_DAY = USHolidayRule.fixed( "Annar í jólum", 12, 26 );
+	public static final USHolidayRule NEW_YEARS_EVE = USHolidayRule.fixed( "Gamlársdagur", 12, 31 ).partial();
+
+	/**
+	 * The rules for all Icelandic holidays, in order of their occurrence.
+	 */
+	public static final List<USHolidayRule> ICELANDIC_RULES = Collections.unmodifiableList( Arrays.asList( NEW_YEARS_DAY, MAUNDY_THURSDAY, GOOD_FRIDAY, EASTER_DAY, EASTER_MONDAY, FIRST_DAY_OF_SUMMER, FIRST_OF_MAY, ASCENSION_DAY, WHITE_MONDAY, SEVENTEENTH_OF_JUNE, TRADEMENS_DAY, CHRISTMAS_EVE, CHRISTMAS_DAY, BOXING_DAY, NEW_YEARS_EVE ) );
+
 	/**
 	 * The year to get holidays for
 	 */
@@ -54,21 +78,9 @@ public class USHolidays {
 	public List<Date> allHolidays() {
 		List<Date> a = new ArrayList<Date>();
 
-		a.add( newYearsDay() );
-		a.add( maundyThursday() );
-		a.add( goodFriday() );
-		a.add( easterDay() );
-		a.add( easterMonday() );
-		a.add( firstDayOfSummer() );
-		a.add( firstOfMay() );
-		a.add( ascensionDay() );
-		a.add( whiteMonday() );
-		a.add( seventeenthOfJune() );
-		a.add( trademensDay() );
-		a.add( christmasEve() );
-		a.add( christmasDay() );
-		a.add( boxingDay() );
-		a.add( newYearsEve() );
+		for( USHolidayRule rule : ICELANDIC_RULES ) {
+			a.add( date( rule ) );
+		}
 
 		return a;
 	}
@@ -79,19 +91,11 @@ public class USHolidays {
 	public List<Date> fullHolidays() {
 		List<Date> a = new ArrayList<Date>();
 
-		a.add( newYearsDay() );
-		a.add( maundyThursday() );
-		a.add( goodFriday() );
-		a.add( easterDay() );
-		a.add( easterMonday() );
-		a.add( firstDayOfSummer() );
-		a.add( firstOfMay() );
-		a.add( ascensionDay() );
-		a.add( whiteMonday() );
-		a.add( seventeenthOfJune() );
-		a.add( trademensDay() );
-		a.add( christmasDay() );
-		a.add( boxingDay() );
+		for( USHolidayRule rule : ICELANDIC_RULES ) {
+			if( !rule.isPartial() ) {
+				a.add( date( rule ) );
+			}
+		}
 
 		return a;
 	}
@@ -102,44 +106,94 @@ public class USHolidays {
 	public List<Date> partialHolidays() {
 		List<Date> a = new ArrayList<Date>();
 
-		a.add( christmasEve() );
-		a.add( newYearsEve() );
+		for( USHolidayRule rule : ICELANDIC_RULES ) {
+			if( rule.isPartial() ) {
+				a.add( date( rule ) );
+			}
+		}
 
 		return a;
 	}
 
+	/**
+	 * @return The day of the given holiday in this year, at midnight.
+	 */
+	private Date date( USHolidayRule rule ) {
+		return USDateUtilities.dateForEpochDay( rule.epochDay( year() ) );
+	}
+
 	/**
 	 * Returns true if the date is a holiday
 	 */
 	public static boolean isHoliday( Date date ) {
-		date = USDateUtilities.normalizeToMidnight( date );
-		int year = USDateUtilities.year( date );
-		return new USHolidays( year ).allHolidays().contains( date );
+		return isHoliday( USDateUtilities.epochDay( date ) );
 	}
 
 	/**
 	 * Returns true if the date is a full holiday
 	 */
 	public static boolean isFullHoliday( Date date ) {
-		date = USDateUtilities.normalizeToMidnight( date );
-		int year = USDateUtilities.year( date );
-		return new USHolidays( year ).fullHolidays().contains( date );
+		return isFullHoliday( USDateUtilities.epochDay( date ) );
 	}
 
 	/**
-	 * Returns true if the date is a full holiday
+	 * Returns true if the date is a partial holiday
 	 */
 	public static boolean isPartialHoliday( Date date ) {
-		date = USDateUtilities.normalizeToMidnight( date );
-		int year = USDateUtilities.year( date );
-		return new USHolidays( year ).partialHolidays().contains( date );
+		return isPartialHoliday( USDateUtilities.epochDay( date ) );
+	}
+
+	/**
+	 * Returns true if the given epoch day (see USDateUtilities.epochDay()) is a holiday
+	 */
+	public static boolean isHoliday( int epochDay ) {
+		return USHolidayCalendar.ICELANDIC.isHoliday( epochDay );
+	}
+
+	/**
+	 * Returns true if the given epoch day (see USDateUtilities.epochDay()) is a full holiday
+	 */
+	public static boolean isFullHoliday( int epochDay ) {
+		return USHolidayCalendar.ICELANDIC.isFullHoliday( epochDay );
+	}
+
+	/**
+	 * Returns true if the given epoch day (see USDateUtilities.epochDay()) is a partial holiday
+	 */
+	public static boolean isPartialHoliday( int epochDay ) {
+		return USHolidayCalendar.ICELANDIC.isPartialHoliday( epochDay );
+	}
+
+	/**
+	 * Returns true if the given epoch day (see USDateUtilities.epochDay()) is not on a weekend, and is not a full holiday
+	 */
+	public static boolean isWorkday( int epochDay ) {
+		return USHolidayCalendar.ICELANDIC.isWorkday( epochDay );
+	}
+
+	/**
+	 * Counts the workdays from one epoch day (see USDateUtilities.epochDay()) up to, but not including, another.
+	 * 
+	 * @see USHolidayCalendar#workdaysBetween(int, int)
+	 */
+	public static int workdaysBetween( int fromEpochDay, int toEpochDay ) {
+		return USHolidayCalendar.ICELANDIC.workdaysBetween( fromEpochDay, toEpochDay );
+	}
+
+	/**
+	 * Finds the workday the given number of workdays after (or before) the given epoch day (see USDateUtilities.epochDay()).
+	 * 
+	 * @see USHolidayCalendar#addWorkdays(int, int)
+	 */
+	public static int addWorkdays( int epochDay, int workdays ) {
+		return USHolidayCalendar.ICELANDIC.addWorkdays( epochDay, workdays );
 	}
 
 	/**
 	 * New Year's Day (Icelandic: Nýársdagur)
 	 */
 	public Date newYearsDay() {
-		return USDateUtilities.date( year(), 1, 1 );
+		return date( NEW_YEARS_DAY );
 	}
 
 	/**
@@ -147,7 +201,7 @@ public class USHolidays {
 	 * Thursday before Easter Sunday.
 	 */
 	public Date maundyThursday() {
-		return USDateUtilities.addDays( easterDay(), -3 );
+		return date( MAUNDY_THURSDAY );
 	}
 
 	/**
@@ -155,34 +209,16 @@ public class USHolidays {
 	 * Friday before Easter Sunday.
 	 */
 	public Date goodFriday() {
-		return USDateUtilities.addDays( easterDay(), -2 );
+		return date( GOOD_FRIDAY );
 	}
 
 	/**
 	 * Easter Day (Icelandic: Páskadagur)
 	 * 
-	 * Borrowed from: http://www.smart.net/~mmontes/nature1876.html
-	 * 
-	 * Holds for any year in the Gregorian Calendar, which (of course) means years including and after 1583.
+	 * See USHolidayRule.easterSunday() for the calculation, which holds for years including and after 1583.
 	 */
 	public Date easterDay() {
-		int a = year() % 19;
-		int b = year() / 100;
-		int c = year() % 100;
-		int d = b / 4;
-		int e = b % 4;
-		int f = (b + 8) / 25;
-		int g = (b - f + 1) / 3;
-		int h = (19 * a + b - d - g + 15) % 30;
-		int i = c / 4;
-		int k = c % 4;
-		int l = (32 + 2 * e + 2 * i - h - k) % 7;
-		int m = (a + 11 * h + 22 * l) / 451;
-		int month = ((h + l - 7 * m + 114) / 31);
-		int p = (h + l - 7 * m + 114) % 31;
-		int day = p + 1;
-
-		return USDateUtilities.date( year(), month, day );
+		return date( EASTER_DAY );
 	}
 
 	/**
@@ -190,7 +226,7 @@ public class USHolidays {
 	 * Monday following Easter Sunday
 	 */
 	public Date easterMonday() {
-		return USDateUtilities.addDays( easterDay(), 1 );
+		return date( EASTER_MONDAY );
 	}
 
 	/**
@@ -198,17 +234,14 @@ public class USHolidays {
 	 * Thursday during the period 19 to 25 April
 	 */
 	public Date firstDayOfSummer() {
-		GregorianCalendar calendar = USDateUtilities.cal();
-		calendar.set( year(), GregorianCalendar.APRIL, 19, 0, 0, 0 );
-		calendar = USDateUtilities.setToNextDayOfWeek( calendar, GregorianCalendar.THURSDAY );
-		return calendar.getTime();
+		return date( FIRST_DAY_OF_SUMMER );
 	}
 
 	/**
 	 * Labour day (Icelandic: Verkalýðdagurinn (1. maí))
 	 */
 	public Date firstOfMay() {
-		return USDateUtilities.date( year(), 5, 1 );
+		return date( FIRST_OF_MAY );
 	}
 
 	/**
@@ -216,7 +249,7 @@ public class USHolidays {
 	 * Holy Thursday, six weeks after Maundy Thursday.
 	 */
 	public Date ascensionDay() {
-		return USDateUtilities.addDays( maundyThursday(), 42 );
+		return date( ASCENSION_DAY );
 	}
 
 	/**
@@ -224,7 +257,7 @@ public class USHolidays {
 	 * Monday following White Sunday, seven weeks after Easter.
 	 */
 	public Date whiteMonday() {
-		return USDateUtilities.addDays( easterMonday(), 49 );
+		return date( WHITE_MONDAY );
 	}
 
 	/**
@@ -232,7 +265,7 @@ public class USHolidays {
 	 * Icelandic national holiday.
 	 */
 	public Date seventeenthOfJune() {
-		return USDateUtilities.date( year(), 6, 17 );
+		return date( SEVENTEENTH_OF_JUNE );
 	}
 
 	/**
@@ -240,10 +273,7 @@ public class USHolidays {
 	 * First Monday in August.
 	 */
 	public Date trademensDay() {
-		GregorianCalendar calendar = USDateUtilities.cal();
-		calendar.set( year(), GregorianCalendar.AUGUST, 1 );
-		calendar = USDateUtilities.setToNextDayOfWeek( calendar, GregorianCalendar.MONDAY );
-		return calendar.getTime();
+		return date( TRADEMENS_DAY );
 	}
 
 	/**
@@ -251,21 +281,21 @@ public class USHolidays {
 	 * Afternoon only.
 	 */
 	public Date christmasEve() {
-		return USDateUtilities.date( year(), 12, 24 );
+		return date( CHRISTMAS_EVE );
 	}
 
 	/**
 	 * Christmas Day (Icelandic: Jóladagur).
 	 */
 	public Date christmasDay() {
-		return USDateUtilities.date( year(), 12, 25 );
+		return date( CHRISTMAS_DAY );
 	}
 
 	/**
 	 * Boxing Day (Icelandic: Annar í jólum).
 	 */
 	public Date boxingDay() {
-		return USDateUtilities.date( year(), 12, 26 );
+		return date( BOXING_DAY );
 	}
 
 	/**
@@ -273,6 +303,6 @@ public class USHolidays {
 	 * Afternoon only.
 	 */
 	public Date newYearsEve() {
-		return USDateUtilities.date( year(), 12, 31 );
+		return date( NEW_YEARS_EVE );
 	}
-}
\ No newline at end of file
+}
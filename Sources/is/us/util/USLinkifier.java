@@ -0,0 +1,253 @@
+package is.us.util;
+
+import java.io.*;
+import java.util.regex.*;
+
+/**
+ * Converts line breaks to br-tags, activates hyperlinks and creates links to Twitter users in a single pass over a string.
+ * 
+ * All enabled conversions are combined into one precompiled pattern, so the text is only scanned once,
+ * and text inserted by one conversion is never examined by another.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		String html = USLinkifier.HTMLIFIER.linkify( comment );
+ * 		USLinkifier.HTMLIFIER.linkify( reader, writer );
+ * </code>
+ * 
+ * Instances are immutable and can be shared between threads.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public final class USLinkifier {
+
+	/**
+	 * Matches URLs to activate.
+	 */
+	private static final String HYPERLINK_REGEX = "(((ht|f)(tp)(s?)://)([a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*(.))?[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*((\\.)[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]{2,5})(/[\\w|\\d|\\.|%|&|;|=|\\?]*)*)(\\S)";
+
+	/**
+	 * Matches Twitter user names. The user name is in the first group.
+	 */
+	private static final String TWITTER_USER_REGEX = "@(\\w+)";
+
+	private static final String BREAK = "<br />\n";
+	private static final String TWITTER_URL = "http://www.twitter.com/";
+
+	/**
+	 * Size of the chunks read by linkify( Reader, Appendable ).
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Inserts br-tags and activates hyperlinks, as used by USStringUtilities.htmlify().
+	 */
+	public static final USLinkifier HTMLIFIER = new USLinkifier( true, true, false );
+
+	/**
+	 * Activates hyperlinks, as used by USStringUtilities.activateHyperlinksInString().
+	 */
+	public static final USLinkifier HYPERLINKS = new USLinkifier( false, true, false );
+
+	/**
+	 * Creates links to Twitter users, as used by USStringUtilities.activateTwitterUsersInString().
+	 */
+	public static final USLinkifier TWITTER_USERS = new USLinkifier( false, false, true );
+
+	/**
+	 * The combined pattern, or null if no conversions are enabled.
+	 */
+	private final Pattern _pattern;
+
+	/**
+	 * Group numbers of each conversion in _pattern, -1 if the conversion is not enabled.
+	 */
+	private final int _breakGroup;
+	private final int _hyperlinkGroup;
+	private final int _twitterUserGroup;
+
+	/**
+	 * Constructs a new linkifier.
+	 * 
+	 * @param convertBreaks Should line breaks be converted to br-tags
+	 * @param activateHyperlinks Should URLs be converted to hyperlinks
+	 * @param activateTwitterUsers Should @username be converted to links to the user's Twitter page
+	 */
+	public USLinkifier( boolean convertBreaks, boolean activateHyperlinks, boolean activateTwitterUsers ) {
+		StringBuilder regex = new StringBuilder();
+		int group = 1;
+
+		if( convertBreaks ) {
+			regex.append( "(\n)" );
+			_breakGroup = group;
+			group += 1;
+		}
+		else {
+			_breakGroup = -1;
+		}
+
+		if( activateHyperlinks ) {
+			appendAlternative( regex, HYPERLINK_REGEX );
+			_hyperlinkGroup = group;
+			group += 1 + Pattern.compile( HYPERLINK_REGEX ).matcher( "" ).groupCount();
+		}
+		else {
+			_hyperlinkGroup = -1;
+		}
+
+		if( activateTwitterUsers ) {
+			appendAlternative( regex, TWITTER_USER_REGEX );
+			_twitterUserGroup = group + 1;
+		}
+		else {
+			_twitterUserGroup = -1;
+		}
+
+		_pattern = (regex.length() > 0) ? Pattern.compile( regex.toString() ) : null;
+	}
+
+	/**
+	 * Appends the given regex to the combined regex as a capturing group.
+	 */
+	private static void appendAlternative( StringBuilder regex, String alternative ) {
+
+		if( regex.length() > 0 ) {
+			regex.append( '|' );
+		}
+
+		regex.append( '(' ).append( alternative ).append( ')' );
+	}
+
+	/**
+	 * Performs the conversions on the given string.
+	 * 
+	 * @param string The string to convert.
+	 * @return The converted string. If nothing was converted, the original string is returned.
+	 */
+	public String linkify( String string ) {
+
+		if( string == null || _pattern == null ) {
+			return string;
+		}
+
+		Matcher matcher = _pattern.matcher( string );
+
+		if( !matcher.find() ) {
+			return string;
+		}
+
+		StringBuilder b = new StringBuilder( string.length() + 64 );
+
+		try {
+			append( string, matcher, b );
+		}
+		catch( IOException e ) {
+			// StringBuilder.append() does not throw.
+			throw new IllegalStateException( e );
+		}
+
+		return b.toString();
+	}
+
+	/**
+	 * Performs the conversions on the given text, writing the result to the given Appendable (for example a Writer).
+	 * 
+	 * @param text The text to convert.
+	 * @param out The destination to write the converted text to.
+	 * @throws IOException if writing to the destination fails.
+	 */
+	public void linkify( CharSequence text, Appendable out ) throws IOException {
+
+		if( text == null ) {
+			return;
+		}
+
+		if( _pattern == null ) {
+			out.append( text );
+			return;
+		}
+
+		Matcher matcher = _pattern.matcher( text );
+
+		if( matcher.find() ) {
+			append( text, matcher, out );
+		}
+		else {
+			out.append( text );
+		}
+	}
+
+	/**
+	 * Performs the conversions on all text read from the given reader, writing the result to the given Appendable (for example a Writer).
+	 * 
+	 * None of the conversions span a line break, so the text is converted a line at a time
+	 * and memory use depends only on the length of the longest line. The reader is not closed.
+	 * 
+	 * @param in The reader to read the text to convert from.
+	 * @param out The destination to write the converted text to.
+	 * @throws IOException if reading or writing fails.
+	 */
+	public void linkify( Reader in, Appendable out ) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		StringBuilder pending = new StringBuilder( BUFFER_SIZE );
+		int read;
+
+		while( (read = in.read( buffer )) != -1 ) {
+			int lastBreak = -1;
+
+			for( int i = read - 1; i >= 0; i-- ) {
+				if( buffer[i] == '\n' ) {
+					lastBreak = i;
+					break;
+				}
+			}
+
+			if( lastBreak == -1 ) {
+				pending.append( buffer, 0, read );
+			}
+			else {
+				pending.append( buffer, 0, lastBreak + 1 );
+				linkify( pending, out );
+				pending.setLength( 0 );
+				pending.append( buffer, lastBreak + 1, read - lastBreak - 1 );
+			}
+		}
+
+		linkify( pending, out );
+	}
+
+	/**
+	 * Writes the converted text to out, starting with the match the given matcher has already found.
+	 */
+	private void append( CharSequence text, Matcher matcher, Appendable out ) throws IOException {
+		int copied = 0;
+
+		do {
+			out.append( text, copied, matcher.start() );
+
+			if( _breakGroup != -1 && matcher.start( _breakGroup ) != -1 ) {
+				out.append( BREAK );
+			}
+			else if( _hyperlinkGroup != -1 && matcher.start( _hyperlinkGroup ) != -1 ) {
+				out.append( "<a href=\"" ).append( text, matcher.start(), matcher.end() ).append( "\">" );
+				out.append( text, matcher.start(), matcher.end() ).append( "</a>" );
+			}
+			else {
+				out.append( "<a href=\"" ).append( TWITTER_URL ).append( text, matcher.start( _twitterUserGroup ), matcher.end( _twitterUserGroup ) ).append( "\">" );
+				out.append( text, matcher.start(), matcher.end() ).append( "</a>" );
+			}
+
+			copied = matcher.end();
+		}
+		while( matcher.find() );
+
+		out.append( text, copied, text.length() );
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + ": " + _pattern;
+	}
+}
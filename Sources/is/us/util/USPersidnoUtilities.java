@@ -148,8 +148,7 @@ public class USPersidnoUtilities {
 		String stringPersidno = persidno.toString();
 
 		if( USStringUtilities.stringHasValue( stringPersidno ) ) {
-			stringPersidno = USStringUtilities.replace( stringPersidno, "-", "" );
-			stringPersidno = USStringUtilities.replace( stringPersidno, " ", "" );
+			stringPersidno = USStringUtilities.remove( stringPersidno, '-', ' ' );
 		}
 
 		return stringPersidno;
@@ -58,8 +58,7 @@ public class USPhoneUtilities {
 	public static String cleanPhoneNumber( String phoneNumber ) {
 		if( USStringUtilities.stringHasValue( phoneNumber ) ) {
 			phoneNumber = phoneNumber.trim();
-			phoneNumber = USStringUtilities.replace( phoneNumber, " ", "" );
-			phoneNumber = USStringUtilities.replace( phoneNumber, "-", "" );
+			phoneNumber = USStringUtilities.remove( phoneNumber, ' ', '-' );
 		}
 		return phoneNumber;
 	}
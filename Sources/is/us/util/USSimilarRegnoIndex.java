@@ -0,0 +1,231 @@
+package is.us.util;
+
+import java.util.*;
+
+/**
+ * An index of registration numbers that finds all numbers similar to a given one (see USStringUtilities.areSimilar()) with a single hash lookup.
+ * 
+ * Numbers are cleaned up using USStringUtilities.cleanupRegno() before they are indexed, and bucketed by their USStringUtilities.similarityKey().
+ * Since similarity is an equivalence relation, all numbers similar to a given number are in the same bucket.
+ * 
+ * To keep memory use low for large registers, where most buckets hold a single number, a bucket is stored
+ * either as the number itself or as an exactly sized array of numbers.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USSimilarRegnoIndex index = new USSimilarRegnoIndex( allRegnos );
+ * 		List<String> lookalikes = index.similarTo( "AB 123" );
+ * </code>
+ * 
+ * The index is not thread safe. If it's modified while being used by multiple threads, access must be synchronized externally.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class USSimilarRegnoIndex {
+
+	/**
+	 * Buckets of numbers keyed by similarity key. Each value is either a String or a String[] with at least two elements.
+	 */
+	private final HashMap<String, Object> _buckets;
+
+	/**
+	 * Number of registration numbers in the index.
+	 */
+	private int _size;
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public USSimilarRegnoIndex() {
+		_buckets = new HashMap<String, Object>();
+	}
+
+	/**
+	 * Constructs an index containing the given registration numbers.
+	 * 
+	 * @param regnos The numbers to index.
+	 */
+	public USSimilarRegnoIndex( Collection<String> regnos ) {
+		_buckets = new HashMap<String, Object>( Math.max( (int)(regnos.size() / 0.75f) + 1, 16 ) );
+
+		for( String regno : regnos ) {
+			add( regno );
+		}
+	}
+
+	/**
+	 * Adds the given registration number to the index.
+	 * 
+	 * @param regno The number to add.
+	 * @return true if the number was added, false if it was already in the index or has no value.
+	 */
+	public boolean add( String regno ) {
+		String cleaned = USStringUtilities.cleanupRegno( regno );
+
+		if( !USStringUtilities.stringHasValue( cleaned ) ) {
+			return false;
+		}
+
+		String key = USStringUtilities.similarityKey( cleaned );
+		Object bucket = _buckets.get( key );
+
+		if( bucket == null ) {
+			_buckets.put( key, cleaned );
+		}
+		else if( bucket instanceof String ) {
+			if( bucket.equals( cleaned ) ) {
+				return false;
+			}
+
+			_buckets.put( key, new String[] { (String)bucket, cleaned } );
+		}
+		else {
+			String[] regnos = (String[])bucket;
+
+			for( String next : regnos ) {
+				if( next.equals( cleaned ) ) {
+					return false;
+				}
+			}
+
+			String[] newRegnos = new String[regnos.length + 1];
+			System.arraycopy( regnos, 0, newRegnos, 0, regnos.length );
+			newRegnos[regnos.length] = cleaned;
+			_buckets.put( key, newRegnos );
+		}
+
+		_size++;
+		return true;
+	}
+
+	/**
+	 * Removes the given registration number from the index.
+	 * 
+	 * @param regno The number to remove.
+	 * @return true if the number was in the index.
+	 */
+	public boolean remove( String regno ) {
+		String cleaned = USStringUtilities.cleanupRegno( regno );
+
+		if( !USStringUtilities.stringHasValue( cleaned ) ) {
+			return false;
+		}
+
+		String key = USStringUtilities.similarityKey( cleaned );
+		Object bucket = _buckets.get( key );
+
+		if( bucket == null ) {
+			return false;
+		}
+
+		if( bucket instanceof String ) {
+			if( !bucket.equals( cleaned ) ) {
+				return false;
+			}
+
+			_buckets.remove( key );
+		}
+		else {
+			String[] regnos = (String[])bucket;
+			int index = -1;
+
+			for( int i = 0; i < regnos.length; i++ ) {
+				if( regnos[i].equals( cleaned ) ) {
+					index = i;
+					break;
+				}
+			}
+
+			if( index == -1 ) {
+				return false;
+			}
+
+			if( regnos.length == 2 ) {
+				_buckets.put( key, regnos[1 - index] );
+			}
+			else {
+				String[] newRegnos = new String[regnos.length - 1];
+				System.arraycopy( regnos, 0, newRegnos, 0, index );
+				System.arraycopy( regnos, index + 1, newRegnos, index, newRegnos.length - index );
+				_buckets.put( key, newRegnos );
+			}
+		}
+
+		_size--;
+		return true;
+	}
+
+	/**
+	 * @return true if the given registration number is in the index.
+	 */
+	public boolean contains( String regno ) {
+		String cleaned = USStringUtilities.cleanupRegno( regno );
+
+		if( !USStringUtilities.stringHasValue( cleaned ) ) {
+			return false;
+		}
+
+		for( String next : similarTo( cleaned ) ) {
+			if( next.equals( cleaned ) ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds all indexed registration numbers that are similar to the given number, including the number itself if it's in the index.
+	 * 
+	 * @param regno The number to find similar numbers for.
+	 * @return The similar numbers, cleaned up, in the order they were added. The list can not be modified.
+	 */
+	public List<String> similarTo( String regno ) {
+		String cleaned = USStringUtilities.cleanupRegno( regno );
+
+		if( !USStringUtilities.stringHasValue( cleaned ) ) {
+			return Collections.emptyList();
+		}
+
+		Object bucket = _buckets.get( USStringUtilities.similarityKey( cleaned ) );
+
+		if( bucket == null ) {
+			return Collections.emptyList();
+		}
+
+		if( bucket instanceof String ) {
+			return Collections.singletonList( (String)bucket );
+		}
+
+		return Collections.unmodifiableList( Arrays.asList( (String[])bucket ) );
+	}
+
+	/**
+	 * Number of registration numbers in the index.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Number of groups of similar registration numbers in the index.
+	 */
+	public int numberOfGroups() {
+		return _buckets.size();
+	}
+
+	/**
+	 * Removes all registration numbers from the index.
+	 */
+	public void clear() {
+		_buckets.clear();
+		_size = 0;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " - size: " + _size + " - groups: " + _buckets.size();
+	}
+}
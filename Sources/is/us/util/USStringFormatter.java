@@ -0,0 +1,258 @@
+package is.us.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A precompiled formatter for strings with {} placeholders, as used by USStringUtilities.stringWithFormat().
+ * 
+ * The pattern is split into literal segments once, and each placeholder is replaced by the corresponding argument in a single pass.
+ * Arguments are inserted literally, they are never interpreted as patterns or regular expressions.
+ * 
+ * Placeholders without a corresponding argument are left as they are, and surplus arguments are ignored.
+ * Null arguments are rendered as "null".
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USStringFormatter formatter = USStringFormatter.formatterForPattern( "{} króna fjársekt" );
+ * 		String result = formatter.format( 5000 );
+ * </code>
+ * 
+ * Instances are immutable and can be shared between threads.
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public final class USStringFormatter {
+
+	private static final String PLACEHOLDER = "{}";
+
+	/**
+	 * Maximum number of formatters kept by formatterForPattern(). When full, a formatter that hasn't been used since the last eviction sweep is evicted.
+	 */
+	private static final int MAXIMUM_CACHED_FORMATTERS = 1024;
+
+	/**
+	 * Builders larger than this are not kept for reuse, to avoid holding on to memory after formatting a large string.
+	 */
+	private static final int MAXIMUM_REUSED_BUILDER_CAPACITY = 8192;
+
+	/**
+	 * Formatters created by formatterForPattern(), keyed by pattern.
+	 */
+	private static final ConcurrentHashMap<String, CachedFormatter> _formatters = new ConcurrentHashMap<String, CachedFormatter>();
+
+	/**
+	 * A builder for each thread, reused by format(). A plain ThreadLocal rather than a subclass, so pooled threads don't keep a reference to our class loader through it.
+	 */
+	private static final ThreadLocal<ReusableBuilder> _builders = new ThreadLocal<ReusableBuilder>();
+
+	/**
+	 * The pattern this formatter was compiled from.
+	 */
+	private final String _pattern;
+
+	/**
+	 * Literal segments of the pattern. There is always one more literal than there are placeholders.
+	 */
+	private final String[] _literals;
+
+	private USStringFormatter( String pattern ) {
+		_pattern = pattern;
+
+		int count = 0;
+
+		for( int i = pattern.indexOf( PLACEHOLDER ); i != -1; i = pattern.indexOf( PLACEHOLDER, i + PLACEHOLDER.length() ) ) {
+			count++;
+		}
+
+		_literals = new String[count + 1];
+
+		int literalStart = 0;
+
+		for( int i = 0; i < count; i++ ) {
+			int placeholder = pattern.indexOf( PLACEHOLDER, literalStart );
+			_literals[i] = pattern.substring( literalStart, placeholder );
+			literalStart = placeholder + PLACEHOLDER.length();
+		}
+
+		_literals[count] = pattern.substring( literalStart );
+	}
+
+	/**
+	 * Compiles the given pattern.
+	 * 
+	 * @param pattern The pattern to compile.
+	 */
+	public static USStringFormatter compile( String pattern ) {
+
+		if( pattern == null ) {
+			throw new IllegalArgumentException( "Can't compile a null pattern" );
+		}
+
+		return new USStringFormatter( pattern );
+	}
+
+	/**
+	 * Returns a formatter for the given pattern, reusing a previously compiled formatter if one exists.
+	 * 
+	 * @param pattern The pattern to get a formatter for.
+	 */
+	public static USStringFormatter formatterForPattern( String pattern ) {
+		CachedFormatter cached = _formatters.get( pattern );
+
+		if( cached != null ) {
+			// Only written when changed, so the hot path doesn't keep writing to shared memory.
+			if( !cached.used ) {
+				cached.used = true;
+			}
+
+			return cached.formatter;
+		}
+
+		USStringFormatter formatter = compile( pattern );
+		cache( pattern, formatter );
+		return formatter;
+	}
+
+	/**
+	 * Adds the given formatter to the cache, evicting formatters if it's full.
+	 */
+	private static synchronized void cache( String pattern, USStringFormatter formatter ) {
+
+		while( _formatters.size() >= MAXIMUM_CACHED_FORMATTERS ) {
+			evictUnusedFormatter();
+		}
+
+		_formatters.put( pattern, new CachedFormatter( formatter ) );
+	}
+
+	/**
+	 * Evicts the first formatter that hasn't been used since the last sweep, clearing the used flag of the formatters passed over (clock eviction).
+	 * Formatters that are used often are therefore kept, while those used only once are evicted first.
+	 */
+	private static void evictUnusedFormatter() {
+
+		while( true ) {
+			for( Map.Entry<String, CachedFormatter> entry : _formatters.entrySet() ) {
+				CachedFormatter cached = entry.getValue();
+
+				if( cached.used ) {
+					cached.used = false;
+				}
+				else {
+					_formatters.remove( entry.getKey() );
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The pattern this formatter was compiled from.
+	 */
+	public String pattern() {
+		return _pattern;
+	}
+
+	/**
+	 * The number of {} placeholders in the pattern.
+	 */
+	public int numberOfPlaceholders() {
+		return _literals.length - 1;
+	}
+
+	/**
+	 * Replaces the placeholders in the pattern with the given arguments.
+	 * 
+	 * @param arguments The arguments to insert, in the order of the placeholders.
+	 * @return The formatted string.
+	 */
+	public String format( Object... arguments ) {
+
+		if( _literals.length == 1 ) {
+			return _pattern;
+		}
+
+		ReusableBuilder reusable = _builders.get();
+
+		if( reusable == null ) {
+			reusable = new ReusableBuilder();
+			_builders.set( reusable );
+		}
+
+		// The builder is already in use if an argument's toString() formats a string itself.
+		if( reusable.inUse ) {
+			return appendFormatted( new StringBuilder( _pattern.length() + 16 ), arguments ).toString();
+		}
+
+		reusable.inUse = true;
+
+		try {
+			StringBuilder b = reusable.builder;
+			b.setLength( 0 );
+			String result = appendFormatted( b, arguments ).toString();
+
+			if( b.capacity() > MAXIMUM_REUSED_BUILDER_CAPACITY ) {
+				reusable.builder = new StringBuilder();
+			}
+
+			return result;
+		}
+		finally {
+			reusable.inUse = false;
+		}
+	}
+
+	/**
+	 * Replaces the placeholders in the pattern with the given arguments, appending the result to the given builder.
+	 * 
+	 * @param b The builder to append to.
+	 * @param arguments The arguments to insert, in the order of the placeholders.
+	 * @return The builder.
+	 */
+	public StringBuilder appendFormatted( StringBuilder b, Object... arguments ) {
+		int numberOfArguments = (arguments != null) ? arguments.length : 0;
+		int last = _literals.length - 1;
+
+		for( int i = 0; i < last; i++ ) {
+			b.append( _literals[i] );
+
+			if( i < numberOfArguments ) {
+				b.append( arguments[i] );
+			}
+			else {
+				b.append( PLACEHOLDER );
+			}
+		}
+
+		b.append( _literals[last] );
+		return b;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + ": " + _pattern;
+	}
+
+	/**
+	 * A cached formatter, along with a flag indicating if it has been used since the last eviction sweep.
+	 */
+	private static class CachedFormatter {
+		final USStringFormatter formatter;
+		volatile boolean used;
+
+		CachedFormatter( USStringFormatter formatter ) {
+			this.formatter = formatter;
+		}
+	}
+
+	/**
+	 * A builder, along with a flag indicating if it's currently being used.
+	 */
+	private static class ReusableBuilder {
+		StringBuilder builder = new StringBuilder();
+		boolean inUse;
+	}
+}
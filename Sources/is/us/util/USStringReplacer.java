@@ -0,0 +1,279 @@
+package is.us.util;
+
+import java.util.*;
+
+/**
+ * Replaces multiple strings in a single pass, using an Aho-Corasick automaton built from the keys of a replacement map.
+ * 
+ * Where matches overlap, the leftmost match wins, and if several matches start at the same position, the longest one wins.
+ * Replaced text is never scanned again, so the result does not depend on the order of the keys in the map.
+ * 
+ * The replacer is immutable once constructed, so a single instance can be built once and used by multiple threads.
+ * 
+ * Example use:
+ * 
+ * <code>
+ * 		USStringReplacer replacer = new USStringReplacer( replacements );
+ * 		String result = replacer.replace( "the lazy cat crawled under the hyper dog" );
+ * </code>
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public final class USStringReplacer {
+
+	/**
+	 * Sorted transition characters for each node in the automaton.
+	 */
+	private final char[][] _labels;
+
+	/**
+	 * Target nodes of the transitions in _labels.
+	 */
+	private final int[][] _targets;
+
+	/**
+	 * Failure link for each node, pointing to the node of the longest proper suffix that is also in the trie.
+	 */
+	private final int[] _failure;
+
+	/**
+	 * Length of the string each node represents.
+	 */
+	private final int[] _depth;
+
+	/**
+	 * For each node, the index of the longest pattern that is a suffix of the node's string, or -1 if there is none.
+	 */
+	private final int[] _output;
+
+	/**
+	 * Length of each pattern.
+	 */
+	private final int[] _patternLengths;
+
+	/**
+	 * The replacement for each pattern.
+	 */
+	private final String[] _replacements;
+
+	/**
+	 * Constructs a new replacer. Empty or null keys are ignored, null values are treated as empty strings.
+	 * 
+	 * @param replacements Map of strings to replace to their replacements.
+	 */
+	public USStringReplacer( Map<String, String> replacements ) {
+
+		List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+		List<Integer> terminals = new ArrayList<Integer>();
+		List<Integer> depths = new ArrayList<Integer>();
+		List<String> values = new ArrayList<String>();
+		List<Integer> lengths = new ArrayList<Integer>();
+
+		children.add( new TreeMap<Character, Integer>() );
+		terminals.add( -1 );
+		depths.add( 0 );
+
+		if( replacements != null ) {
+			for( Map.Entry<String, String> entry : replacements.entrySet() ) {
+				String key = entry.getKey();
+
+				if( !USStringUtilities.stringHasValue( key ) ) {
+					continue;
+				}
+
+				int node = 0;
+
+				for( int i = 0; i < key.length(); i++ ) {
+					Character c = key.charAt( i );
+					Integer next = children.get( node ).get( c );
+
+					if( next == null ) {
+						next = children.size();
+						children.add( new TreeMap<Character, Integer>() );
+						terminals.add( -1 );
+						depths.add( i + 1 );
+						children.get( node ).put( c, next );
+					}
+
+					node = next;
+				}
+
+				String value = entry.getValue();
+				terminals.set( node, values.size() );
+				values.add( (value != null) ? value : "" );
+				lengths.add( key.length() );
+			}
+		}
+
+		int nodeCount = children.size();
+		_labels = new char[nodeCount][];
+		_targets = new int[nodeCount][];
+		_failure = new int[nodeCount];
+		_depth = new int[nodeCount];
+		_output = new int[nodeCount];
+
+		for( int node = 0; node < nodeCount; node++ ) {
+			Map<Character, Integer> transitions = children.get( node );
+			_labels[node] = new char[transitions.size()];
+			_targets[node] = new int[transitions.size()];
+			_depth[node] = depths.get( node );
+
+			int i = 0;
+
+			for( Map.Entry<Character, Integer> transition : transitions.entrySet() ) {
+				_labels[node][i] = transition.getKey();
+				_targets[node][i] = transition.getValue();
+				i++;
+			}
+		}
+
+		// Breadth first traversal, so the failure link of each node's parent is known before the node is reached.
+		int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+
+		_output[0] = -1;
+		queue[tail++] = 0;
+
+		while( head < tail ) {
+			int node = queue[head++];
+
+			for( int i = 0; i < _labels[node].length; i++ ) {
+				char c = _labels[node][i];
+				int child = _targets[node][i];
+
+				if( node == 0 ) {
+					_failure[child] = 0;
+				}
+				else {
+					int f = _failure[node];
+
+					while( f != 0 && transition( f, c ) == -1 ) {
+						f = _failure[f];
+					}
+
+					int t = transition( f, c );
+					_failure[child] = (t != -1) ? t : 0;
+				}
+
+				int terminal = terminals.get( child );
+				_output[child] = (terminal != -1) ? terminal : _output[_failure[child]];
+				queue[tail++] = child;
+			}
+		}
+
+		_replacements = values.toArray( new String[values.size()] );
+		_patternLengths = new int[lengths.size()];
+
+		for( int i = 0; i < _patternLengths.length; i++ ) {
+			_patternLengths[i] = lengths.get( i );
+		}
+	}
+
+	/**
+	 * Replaces all occurrences of the keys in the given string with their replacements.
+	 * 
+	 * @param string The string to perform replacements on.
+	 * @return The resulting string. If nothing was replaced, the original string is returned.
+	 */
+	public String replace( String string ) {
+
+		if( string == null ) {
+			return null;
+		}
+
+		StringBuilder b = null;
+		int length = string.length();
+		int copied = 0;
+		int state = 0;
+		int matchPattern = -1;
+		int matchStart = 0;
+		int i = 0;
+
+		while( i < length ) {
+			state = next( state, string.charAt( i ) );
+			i++;
+
+			int pattern = _output[state];
+
+			if( pattern != -1 ) {
+				int start = i - _patternLengths[pattern];
+
+				// A match starting at the same position as the current one must be longer, since it ends later.
+				if( matchPattern == -1 || start <= matchStart ) {
+					matchPattern = pattern;
+					matchStart = start;
+				}
+			}
+
+			// The match is final when no match found from here on can start at or before it, or at the end of the string.
+			// Scanning then continues right after the match, since text scanned past it may contain further matches.
+			if( matchPattern != -1 && (i == length || matchStart < i - _depth[state]) ) {
+				if( b == null ) {
+					b = new StringBuilder( length + 16 );
+				}
+
+				b.append( string, copied, matchStart );
+				b.append( _replacements[matchPattern] );
+				copied = matchStart + _patternLengths[matchPattern];
+				i = copied;
+				state = 0;
+				matchPattern = -1;
+			}
+		}
+
+		if( b == null ) {
+			return string;
+		}
+
+		b.append( string, copied, length );
+		return b.toString();
+	}
+
+	/**
+	 * @return The state reached from the given state when reading the given character.
+	 */
+	private int next( int state, char c ) {
+
+		while( true ) {
+			int t = transition( state, c );
+
+			if( t != -1 ) {
+				return t;
+			}
+
+			if( state == 0 ) {
+				return 0;
+			}
+
+			state = _failure[state];
+		}
+	}
+
+	/**
+	 * @return The target of the trie transition from the given node using the given character, or -1 if there is none.
+	 */
+	private int transition( int node, char c ) {
+		char[] labels = _labels[node];
+		int low = 0;
+		int high = labels.length - 1;
+
+		while( low <= high ) {
+			int mid = (low + high) >>> 1;
+			char label = labels[mid];
+
+			if( label < c ) {
+				low = mid + 1;
+			}
+			else if( label > c ) {
+				high = mid - 1;
+			}
+			else {
+				return _targets[node][mid];
+			}
+		}
+
+		return -1;
+	}
+}
@@ -2,6 +2,9 @@ package is.us.util;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
 import java.text.*;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -26,6 +29,16 @@ public class USStringUtilities extends Object {
 	 */
 	private static final String UTF_8 = "UTF-8";
 
+	/**
+	 * The UTF-8 charset, used when no encoding is given.
+	 */
+	private static final Charset UTF_8_CHARSET = Charset.forName( UTF_8 );
+
+	/**
+	 * Size of the chunks read when decoding a stream.
+	 */
+	private static final int DECODING_BUFFER_SIZE = 8192;
+
 	/**
 	 * Long names used when formatting byte-sizes.
 	 */
@@ -46,16 +59,42 @@ public class USStringUtilities extends Object {
 	 */
 	private static final DecimalFormatSymbols ICELANDIC_DECIMAL_FORMAT_SYMBOLS = new DecimalFormatSymbols( new Locale( "is" ) );
 
+	/**
+	 * Maximum number of different fraction digit settings each thread keeps a formatter for.
+	 */
+	private static final int MAXIMUM_CACHED_DECIMAL_FORMATS = 64;
+
+	/**
+	 * Formatters used by formatDouble(), kept per thread since DecimalFormat is not thread safe. Use decimalFormatCache() to get this thread's cache.
+	 * A plain ThreadLocal rather than a subclass, so pooled threads don't keep a reference to our class loader through it.
+	 */
+	private static final ThreadLocal<DecimalFormatCache> DECIMAL_FORMAT_CACHE = new ThreadLocal<DecimalFormatCache>();
+
 	/**
 	 * Characters allowed for use on permno.
 	 */
 	public static final List<String> ALLOWED_PERMNO_CHARS = Arrays.asList( new String[] { "A", "Á", "B", "C", "D", "Ð", "E", "É", "F", "G", "H", "I", "Í", "J", "K", "L", "M", "N", "O", "Ó", "P", "Q", "R", "S", "T", "U", "Ú", "V", "W", "X", "Y", "Ý", "Þ", "Z", "Æ", "Ö" } ); // 30.07.2008 Bjarni Sævarsson
 
+	/**
+	 * ALLOWED_PERMNO_CHARS as a bitset over Latin-1, one bit per character.
+	 */
+	private static final long[] PERMNO_LETTERS = permnoLetters();
+
 	/**
 	 * This array contains sets of characters that can be considered similar looking.
 	 */
 	private static final String[] SIMILAR_CHARACTERS = new String[] { "A;Á", "E;É", "I;Í;1", "I;Í;1", "O;Ó;0", "U;Ú", "Y;Ý" };
 
+	/**
+	 * For each Latin-1 character, the first character of its set in SIMILAR_CHARACTERS, or the character itself if it's not in a set.
+	 */
+	private static final char[] SIMILARITY_CLASSES = similarityClasses();
+
+	/**
+	 * For each Latin-1 character, the string it's replaced with by replaceIcelandicCharsAndRemoveSpaces(), or null if it's kept as it is.
+	 */
+	private static final String[] TRANSLITERATIONS = transliterations();
+
 	/**
 	 * Most common HTML entity escape characters.. Unicode int value = { Unicode hex value, Character, HTML Entity }
 	 */
@@ -172,6 +211,11 @@ public class USStringUtilities extends Object {
 		escapeChart.put( 376, new String[] { "0178", "Ÿ", "&#x0178;" } );
 	}
 
+	/**
+	 * HTML entities from escapeChart, indexed by the character they represent. Used by escapeHTML().
+	 */
+	private static final String[] HTML_ESCAPE_TABLE = htmlEscapeTable();
+
 	/**
 	 * No instances created, ever.
 	 */
@@ -225,34 +269,114 @@ public class USStringUtilities extends Object {
 
 	/**
 	 * Checks if the string validates as a permno (only checks format of String).
+	 * 
+	 * The string is checked as it would be after cleanupPermno(), without creating the cleaned up string.
 	 */
 	public static final boolean validatePermno( String permno ) {
 
-		if( !USStringUtilities.stringHasValue( permno ) )
+		if( permno == null ) {
 			return false;
+		}
 
-		permno = USStringUtilities.cleanupPermno( permno );
+		int position = 0;
 
-		// A permno must be 5 characters long.
-		if( permno.length() != 5 )
-			return false;
+		for( int i = 0; i < permno.length(); i++ ) {
+			char c = permno.charAt( i );
 
-		// The first two characters of a permno must be upper case English/icelandic letters.
-		if( !ALLOWED_PERMNO_CHARS.contains( permno.substring( 0, 1 ) ) || !ALLOWED_PERMNO_CHARS.contains( permno.substring( 1, 2 ) ) ) {
-			return false;
+			if( c == '-' || c == ' ' ) {
+				continue;
+			}
+
+			// A permno must be 5 characters long.
+			if( position == 5 ) {
+				return false;
+			}
+
+			c = Character.toUpperCase( c );
+
+			// The first two characters must be upper case English/Icelandic letters, the third a letter or a digit, and the last two digits.
+			boolean valid;
+
+			if( position < 2 ) {
+				valid = isPermnoLetter( c );
+			}
+			else if( position == 2 ) {
+				valid = isPermnoLetter( c ) || isDigit( c );
+			}
+			else {
+				valid = isDigit( c );
+			}
+
+			if( !valid ) {
+				return false;
+			}
+
+			position++;
 		}
 
-		// The first third character of a PERMNO must be a upper case English/Icelandic letter or a digit.
-		if( !ALLOWED_PERMNO_CHARS.contains( permno.substring( 2, 3 ) ) && !java.lang.Character.isDigit( permno.charAt( 3 ) ) ) {
-			return false;
+		return position == 5;
+	}
+
+	/**
+	 * Validates the given permnos (see validatePermno()).
+	 * 
+	 * @param permnos The permnos to validate.
+	 * @return An array where each element indicates if the permno at the same index is valid.
+	 */
+	public static boolean[] validatePermnos( String[] permnos ) {
+		boolean[] result = new boolean[permnos.length];
+
+		for( int i = 0; i < permnos.length; i++ ) {
+			result[i] = validatePermno( permnos[i] );
 		}
 
-		// The last two characters of a PERMNO must be digits.
-		if( !java.lang.Character.isDigit( permno.charAt( 3 ) ) || !java.lang.Character.isDigit( permno.charAt( 4 ) ) ) {
-			return false;
+		return result;
+	}
+
+	/**
+	 * Finds the permnos that do not validate (see validatePermno()).
+	 * 
+	 * @param permnos The permnos to validate.
+	 * @return The invalid permnos, in the order they were encountered.
+	 */
+	public static List<String> invalidPermnos( Iterable<String> permnos ) {
+		List<String> result = new ArrayList<String>();
+
+		for( String permno : permnos ) {
+			if( !validatePermno( permno ) ) {
+				result.add( permno );
+			}
 		}
 
-		return true;
+		return result;
+	}
+
+	/**
+	 * @return true if the given character is in ALLOWED_PERMNO_CHARS.
+	 */
+	private static boolean isPermnoLetter( char c ) {
+		return c < 256 && (PERMNO_LETTERS[c >>> 6] & (1L << c)) != 0;
+	}
+
+	/**
+	 * @return true if the given character is an ASCII digit.
+	 */
+	private static boolean isDigit( char c ) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * @return The bitset used by isPermnoLetter(), built from ALLOWED_PERMNO_CHARS.
+	 */
+	private static long[] permnoLetters() {
+		long[] letters = new long[4];
+
+		for( String letter : ALLOWED_PERMNO_CHARS ) {
+			char c = letter.charAt( 0 );
+			letters[c >>> 6] |= 1L << c;
+		}
+
+		return letters;
 	}
 
 	/**
@@ -284,19 +408,13 @@ public class USStringUtilities extends Object {
 	 * Indicates if two characters are "similar", in the sense that they could be difficult for humans to differentiate between.
 	 */
 	public static boolean areSimilar( char char1, char char2 ) {
-		for( String nextSet : SIMILAR_CHARACTERS ) {
-			String[] array = nextSet.split( ";" );
-			List<String> charsInSet = Arrays.asList( array );
-
-			if( char1 == char2 || (charsInSet.contains( String.valueOf( char1 ) ) && charsInSet.contains( String.valueOf( char2 ) )) )
-				return true;
-		}
-
-		return false;
+		return similarityClass( char1 ) == similarityClass( char2 );
 	}
 
 	/**
 	 * Indicates if two strings are "similar", in the sense that they could be difficult for humans to differentiate between.
+	 * 
+	 * Spaces are ignored and the comparison is case insensitive. Two strings are similar if and only if their similarityKey() is equal.
 	 */
 	public static boolean areSimilar( String string1, String string2 ) {
 
@@ -304,27 +422,86 @@ public class USStringUtilities extends Object {
 			return false;
 		}
 
-		string1 = replace( string1, " ", "" );
-		string2 = replace( string2, " ", "" );
+		int length1 = string1.length();
+		int length2 = string2.length();
+		int i1 = 0;
+		int i2 = 0;
 
-		int regno1Length = string1.length();
-		int regno2Length = string2.length();
-
-		if( regno1Length != regno2Length )
-			return false;
+		while( true ) {
+			while( i1 < length1 && string1.charAt( i1 ) == ' ' ) {
+				i1++;
+			}
 
-		string1 = string1.toUpperCase();
-		string2 = string2.toUpperCase();
+			while( i2 < length2 && string2.charAt( i2 ) == ' ' ) {
+				i2++;
+			}
 
-		int shorterStringLength = (regno1Length < regno2Length) ? regno1Length : regno2Length;
+			if( i1 == length1 || i2 == length2 ) {
+				return i1 == length1 && i2 == length2;
+			}
 
-		for( int i = shorterStringLength - 1; i >= 0; i-- ) {
-			if( !areSimilar( string1.charAt( i ), string2.charAt( i ) ) ) {
+			if( similarityClass( Character.toUpperCase( string1.charAt( i1++ ) ) ) != similarityClass( Character.toUpperCase( string2.charAt( i2++ ) ) ) ) {
 				return false;
 			}
 		}
+	}
 
-		return true;
+	/**
+	 * Maps a string to a key that is shared by all strings similar to it (see areSimilar()).
+	 * 
+	 * Spaces are removed, the string is uppercased and each character is replaced by the first character of its set in SIMILAR_CHARACTERS.
+	 * This allows similar strings to be found by a hash lookup, for example "ÁB 1O0" and "AB I0Ó" both map to "ABIOO".
+	 * 
+	 * @param string The string to create a key for.
+	 * @return The similarity key, or null if the string is null.
+	 */
+	public static String similarityKey( String string ) {
+
+		if( string == null ) {
+			return null;
+		}
+
+		int length = string.length();
+		char[] key = new char[length];
+		int keyLength = 0;
+
+		for( int i = 0; i < length; i++ ) {
+			char c = string.charAt( i );
+
+			if( c != ' ' ) {
+				key[keyLength++] = similarityClass( Character.toUpperCase( c ) );
+			}
+		}
+
+		return new String( key, 0, keyLength );
+	}
+
+	/**
+	 * @return The character representing the set of similar characters the given character belongs to.
+	 */
+	private static char similarityClass( char c ) {
+		return (c < SIMILARITY_CLASSES.length) ? SIMILARITY_CLASSES[c] : c;
+	}
+
+	/**
+	 * @return The lookup table for similarityClass(), built from SIMILAR_CHARACTERS.
+	 */
+	private static char[] similarityClasses() {
+		char[] classes = new char[256];
+
+		for( int i = 0; i < classes.length; i++ ) {
+			classes[i] = (char)i;
+		}
+
+		for( String nextSet : SIMILAR_CHARACTERS ) {
+			String[] charsInSet = nextSet.split( ";" );
+
+			for( String c : charsInSet ) {
+				classes[c.charAt( 0 )] = charsInSet[0].charAt( 0 );
+			}
+		}
+
+		return classes;
 	}
 
 	/**
@@ -406,60 +583,177 @@ public class USStringUtilities extends Object {
 			return null;
 		}
 
-		if( encoding == null ) {
-			encoding = UTF_8;
+		Charset charset = charsetForName( encoding );
+
+		if( charset == null ) {
+			return null;
 		}
 
-		String result = null;
+		try {
+			return USHTTPClient.sharedClient().readString( sourceURL, charset );
+		}
+		catch( IOException e ) {
+			logger.error( "Failed to read string from URL: " + sourceURL, e );
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the given string from an Inputstream, using the given encoding.
+	 * 
+	 * @param encoding The encoding of the data in the input stream
+	 */
+	public static String readStringFromInputStreamUsingEncoding( InputStream in, String encoding ) {
+		Charset charset = charsetForName( encoding );
+
+		if( charset == null ) {
+			return null;
+		}
+
+		return readStringFromInputStream( in, charset );
+	}
+
+	/**
+	 * Reads a string from an InputStream, decoding it with the given charset as it's read. The stream is not closed.
+	 * 
+	 * Malformed input is replaced with the charset's replacement character, as with new String( byte[], String ).
+	 * 
+	 * @param in The stream to read from.
+	 * @param charset The charset of the data in the stream, if null UTF-8 is used.
+	 * @return The string read, or null if the stream could not be read.
+	 */
+	public static String readStringFromInputStream( InputStream in, Charset charset ) {
+
+		if( in == null ) {
+			return null;
+		}
 
-		URL url = null;
 		try {
-			url = new URL( sourceURL );
-			URLConnection conn = url.openConnection();
+			return decode( Channels.newChannel( in ), (charset != null) ? charset : UTF_8_CHARSET, DECODING_BUFFER_SIZE );
+		}
+		catch( IOException e ) {
+			logger.error( "Could not read string from Inputstream", e );
+			return null;
+		}
+	}
 
-			if( conn != null ) {
-				InputStream in = conn.getInputStream();
+	/**
+	 * Reads a string from a file, decoding it with the given charset.
+	 * 
+	 * The characters are decoded from the file in chunks, into a buffer presized for the file's length, rather than copied into a byte array first.
+	 * Malformed input is replaced with the charset's replacement character, as with new String( byte[], String ).
+	 * 
+	 * @param sourceFile The file to read from.
+	 * @param charset The charset of the file, if null UTF-8 is used.
+	 * @return The string read, or null if the file could not be read.
+	 */
+	public static String readStringFromFile( File sourceFile, Charset charset ) {
 
-				if( in != null ) {
-					result = readStringFromInputStreamUsingEncoding( in, encoding );
+		if( sourceFile == null ) {
+			return null;
+		}
+
+		if( charset == null ) {
+			charset = UTF_8_CHARSET;
+		}
+
+		FileInputStream in = null;
+
+		try {
+			in = new FileInputStream( sourceFile );
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+
+			if( size > Integer.MAX_VALUE ) {
+				throw new IOException( "File is too large to read into a string: " + sourceFile );
+			}
+
+			// The size is only a hint for presizing, the file may change while it's being read.
+			return decode( channel, charset, (int)size );
+		}
+		catch( IOException e ) {
+			logger.error( "Failed to read string from file: " + sourceFile, e );
+			return null;
+		}
+		finally {
+			if( in != null ) {
+				try {
+					in.close();
+				}
+				catch( IOException e ) {
+					logger.error( "Failed to close file: " + sourceFile, e );
 				}
 			}
 		}
-		catch( Exception e ) {
-			logger.error( "Error while downloading string from url: " + url, e );
+	}
+
+	/**
+	 * Reads all bytes from the channel, decoding them into a CharBuffer presized for the expected number of bytes.
+	 */
+	private static String decode( ReadableByteChannel channel, Charset charset, int expectedLength ) throws IOException {
+		CharsetDecoder decoder = decoder( charset );
+		ByteBuffer in = ByteBuffer.allocate( Math.max( 16, Math.min( expectedLength + 1, DECODING_BUFFER_SIZE ) ) );
+		CharBuffer out = CharBuffer.allocate( (int)(expectedLength * decoder.averageCharsPerByte()) + 16 );
+		boolean endOfInput = false;
+
+		while( !endOfInput ) {
+			endOfInput = channel.read( in ) == -1;
+			in.flip();
+
+			while( decoder.decode( in, out, endOfInput ).isOverflow() ) {
+				out = grow( out );
+			}
+
+			in.compact();
 		}
 
-		return result;
+		while( decoder.flush( out ).isOverflow() ) {
+			out = grow( out );
+		}
 
+		out.flip();
+		return out.toString();
 	}
 
 	/**
-	 * Reads the given string from an Inputstream, using the given encoding.
-	 * 
-	 * @param encoding The encoding of the data in the input stream
+	 * @return A copy of the given buffer with double the capacity.
 	 */
-	public static String readStringFromInputStreamUsingEncoding( InputStream in, String encoding ) {
+	private static CharBuffer grow( CharBuffer buffer ) {
+		CharBuffer grown = CharBuffer.allocate( buffer.capacity() * 2 + 16 );
+		buffer.flip();
+		grown.put( buffer );
+		return grown;
+	}
+
+	/**
+	 * @return A decoder for the given charset that replaces malformed and unmappable input.
+	 */
+	private static CharsetDecoder decoder( Charset charset ) {
+		return charset.newDecoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+	/**
+	 * @return The charset with the given name, UTF-8 if the name is null, or null if the charset is not supported.
+	 */
+	private static Charset charsetForName( String encoding ) {
 
 		if( encoding == null ) {
-			encoding = UTF_8;
+			return UTF_8_CHARSET;
 		}
 
 		try {
-			StringBuilder out = new StringBuilder();
-			byte[] b = new byte[4096];
-			for( int n; (n = in.read( b )) != -1; ) {
-				out.append( new String( b, 0, n, encoding ) );
-			}
-			return out.toString();
+			return Charset.forName( encoding );
 		}
-		catch( Exception e ) {
-			logger.error( "Could not read string from Inputstream", e );
+		catch( IllegalArgumentException e ) {
+			logger.error( "Unsupported encoding: " + encoding, e );
 			return null;
 		}
 	}
 
 	/**
 	 * Replaces a substring with another string in the buffer.
+	 * 
+	 * @return The resulting string. If old does not occur in the buffer (or is empty), the buffer itself is returned.
 	 */
 	public static String replace( String buffer, String old, String newString ) {
 
@@ -478,17 +772,105 @@ public class USStringUtilities extends Object {
 		return replaceStringByStringInString( old, newString, buffer );
 	}
 
+	/**
+	 * Replaces a substring with another string in the buffer, appending the result to the given builder.
+	 * 
+	 * @param buffer The characters to perform the replacement on.
+	 * @param old The string to replace. If null or empty, the buffer is appended unchanged.
+	 * @param newString The string to insert. Null is treated as an empty string.
+	 * @param b The builder to append to.
+	 * @return The builder.
+	 */
+	public static StringBuilder replace( CharSequence buffer, String old, String newString, StringBuilder b ) {
+
+		if( buffer == null ) {
+			return b;
+		}
+
+		int index = (old != null && old.length() > 0) ? indexOf( buffer, old, 0 ) : -1;
+
+		if( index == -1 ) {
+			return b.append( buffer );
+		}
+
+		return appendReplaced( buffer, old, (newString != null) ? newString : "", index, b );
+	}
+
+	/**
+	 * Replaces all occurrences of a character in the buffer.
+	 * 
+	 * @return The resulting string. If the character does not occur in the buffer, the buffer itself is returned.
+	 */
+	public static String replace( String buffer, char old, char newChar ) {
+
+		if( buffer == null ) {
+			return null;
+		}
+
+		return buffer.replace( old, newChar );
+	}
+
+	/**
+	 * Removes all occurrences of the given characters from the buffer.
+	 * 
+	 * @return The resulting string. If none of the characters occur in the buffer, the buffer itself is returned.
+	 */
+	public static String remove( String buffer, char... characters ) {
+
+		if( buffer == null ) {
+			return null;
+		}
+
+		int length = buffer.length();
+		int i = 0;
+
+		while( i < length && !contains( characters, buffer.charAt( i ) ) ) {
+			i++;
+		}
+
+		if( i == length ) {
+			return buffer;
+		}
+
+		char[] result = new char[length - 1];
+		buffer.getChars( 0, i, result, 0 );
+		int resultLength = i;
+
+		for( i++; i < length; i++ ) {
+			char c = buffer.charAt( i );
+
+			if( !contains( characters, c ) ) {
+				result[resultLength++] = c;
+			}
+		}
+
+		return new String( result, 0, resultLength );
+	}
+
+	/**
+	 * @return true if the array contains the given character.
+	 */
+	private static boolean contains( char[] characters, char c ) {
+		for( char next : characters ) {
+			if( next == c ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Reads a string from a file, using the given encoding.
 	 */
 	public static String readStringFromFileUsingEncoding( File sourceFile, String encoding ) {
+		Charset charset = charsetForName( encoding );
 
-		if( encoding == null ) {
-			encoding = UTF_8;
+		if( charset == null ) {
+			return null;
 		}
 
-		byte[] bytes = USDataUtilities.readBytesFromFile( sourceFile );
-		return stringFromDataUsingEncoding( bytes, encoding );
+		return readStringFromFile( sourceFile, charset );
 	}
 
 	/**
@@ -499,13 +881,7 @@ public class USStringUtilities extends Object {
 	 * @return the string constructed from the given stream using the given encoding.
 	 */
 	public static String readStringFromStreamUsingEncoding( InputStream in, String encoding ) {
-		if( encoding == null ) {
-			encoding = UTF_8;
-		}
-
-		byte[] bytes = USDataUtilities.readBytesFromStream( in );
-		return stringFromDataUsingEncoding( bytes, encoding );
-
+		return readStringFromInputStreamUsingEncoding( in, encoding );
 	}
 
 	/**
@@ -516,8 +892,7 @@ public class USStringUtilities extends Object {
 	public static String cleanupPermno( String permno ) {
 
 		if( stringHasValue( permno ) ) {
-			permno = replace( permno, "-", "" );
-			permno = replace( permno, " ", "" );
+			permno = remove( permno, '-', ' ' );
 			permno = permno.toUpperCase();
 		}
 
@@ -532,8 +907,7 @@ public class USStringUtilities extends Object {
 	public static String cleanupRegno( String regno ) {
 
 		if( stringHasValue( regno ) ) {
-			regno = replace( regno, "-", "" );
-			regno = replace( regno, " ", "" );
+			regno = remove( regno, '-', ' ' );
 			regno = regno.toUpperCase();
 		}
 
@@ -542,30 +916,93 @@ public class USStringUtilities extends Object {
 
 	/**
 	 * Convert icelandic characters to English equivalents and remove spaces.
+	 * 
+	 * Other accented Latin-1 letters are converted to their unaccented equivalents, and all whitespace is removed.
+	 * 
+	 * @return The converted string. If nothing was converted the original string is returned. Null if the string is null.
 	 */
 	public static String replaceIcelandicCharsAndRemoveSpaces( String s ) {
-		s = replaceStringByStringInString( " ", "", s );
-		s = replaceStringByStringInString( "Ö", "O", s );
-		s = replaceStringByStringInString( "É", "E", s );
-		s = replaceStringByStringInString( "Ý", "Y", s );
-		s = replaceStringByStringInString( "Ú", "U", s );
-		s = replaceStringByStringInString( "Í", "I", s );
-		s = replaceStringByStringInString( "Ó", "O", s );
-		s = replaceStringByStringInString( "Ð", "D", s );
-		s = replaceStringByStringInString( "Á", "A", s );
-		s = replaceStringByStringInString( "Æ", "AE", s );
-		s = replaceStringByStringInString( "Þ", "TH", s );
-		s = replaceStringByStringInString( "ö", "o", s );
-		s = replaceStringByStringInString( "é", "e", s );
-		s = replaceStringByStringInString( "ý", "y", s );
-		s = replaceStringByStringInString( "ú", "u", s );
-		s = replaceStringByStringInString( "í", "i", s );
-		s = replaceStringByStringInString( "ó", "o", s );
-		s = replaceStringByStringInString( "ð", "d", s );
-		s = replaceStringByStringInString( "á", "a", s );
-		s = replaceStringByStringInString( "æ", "ae", s );
-		s = replaceStringByStringInString( "þ", "th", s );
-		return s;
+
+		if( s == null ) {
+			return null;
+		}
+
+		int length = s.length();
+		int i = 0;
+
+		while( i < length && transliteration( s.charAt( i ) ) == null ) {
+			i++;
+		}
+
+		if( i == length ) {
+			return s;
+		}
+
+		StringBuilder b = new StringBuilder( length + 8 );
+		b.append( s, 0, i );
+		return appendTransliterated( s, i, b ).toString();
+	}
+
+	/**
+	 * Convert icelandic characters to English equivalents and remove spaces, appending the result to the given builder.
+	 * 
+	 * @param s The characters to convert.
+	 * @param b The builder to append to.
+	 * @return The builder.
+	 */
+	public static StringBuilder replaceIcelandicCharsAndRemoveSpaces( CharSequence s, StringBuilder b ) {
+		return appendTransliterated( s, 0, b );
+	}
+
+	/**
+	 * Appends the characters of s from the given index on to the builder, converted as by replaceIcelandicCharsAndRemoveSpaces().
+	 */
+	private static StringBuilder appendTransliterated( CharSequence s, int start, StringBuilder b ) {
+		int length = s.length();
+
+		for( int i = start; i < length; i++ ) {
+			char c = s.charAt( i );
+			String replacement = transliteration( c );
+
+			if( replacement == null ) {
+				b.append( c );
+			}
+			else {
+				b.append( replacement );
+			}
+		}
+
+		return b;
+	}
+
+	/**
+	 * @return The replacement for the given character used by replaceIcelandicCharsAndRemoveSpaces(), or null if it's kept as it is.
+	 */
+	private static String transliteration( char c ) {
+		return (c < TRANSLITERATIONS.length) ? TRANSLITERATIONS[c] : null;
+	}
+
+	/**
+	 * @return The lookup table for transliteration().
+	 */
+	private static String[] transliterations() {
+		String[] table = new String[256];
+
+		for( char c = 0; c < table.length; c++ ) {
+			if( Character.isWhitespace( c ) || c == '\u00A0' ) {
+				table[c] = "";
+			}
+		}
+
+		String[] letters = { "ÀÁÂÃÄÅ", "A", "Æ", "AE", "Ç", "C", "ÈÉÊË", "E", "ÌÍÎÏ", "I", "Ð", "D", "Ñ", "N", "ÒÓÔÕÖØ", "O", "ÙÚÛÜ", "U", "Ý", "Y", "Þ", "TH", "ß", "ss", "àáâãäå", "a", "æ", "ae", "ç", "c", "èéêë", "e", "ìíîï", "i", "ð", "d", "ñ", "n", "òóôõöø", "o", "ùúûü", "u", "ýÿ", "y", "þ", "th" };
+
+		for( int i = 0; i < letters.length; i += 2 ) {
+			for( char c : letters[i].toCharArray() ) {
+				table[c] = letters[i + 1];
+			}
+		}
+
+		return table;
 	}
 
 	/**
@@ -651,7 +1088,8 @@ public class USStringUtilities extends Object {
 	}
 
 	/**
-	 * Replaces variable markers in originalString with the objects in the object
+	 * Replaces variable markers ({}) in originalString with the objects in the object array, in order.
+	 * The objects are inserted literally, see USStringFormatter for details.
 	 */
 	public static String stringWithFormat( String originalString, Object... objects ) {
 
@@ -659,19 +1097,7 @@ public class USStringUtilities extends Object {
 			return null;
 		}
 
-		String VARIABLE = "\\{\\}";
-		String returnString = originalString;
-
-		for( int i = 0; i < objects.length; i++ ) {
-			Object replacement = objects[i];
-
-			if( replacement == null )
-				replacement = "null";
-
-			returnString = returnString.replaceFirst( VARIABLE, replacement.toString() );
-		}
-
-		return returnString;
+		return USStringFormatter.formatterForPattern( originalString ).format( objects );
 	}
 
 	/**
@@ -724,42 +1150,30 @@ public class USStringUtilities extends Object {
 	 * Goes through a string and performs the following changes:
 	 * 
 	 * - Activates URLs. - Inserts br-tags
+	 * 
+	 * Both changes are made in a single pass, see USLinkifier.
 	 */
 	public static String htmlify( String originalString ) {
 
-		String s = originalString;
-
-		if( s != null ) {
-			s = convertBreakString( s );
-			s = activateHyperlinksInString( s );
-			s = s.trim();
+		if( originalString == null ) {
+			return null;
 		}
 
-		return s;
+		return USLinkifier.HTMLIFIER.linkify( originalString ).trim();
 	}
 
 	/**
 	 * Creates active, working hyperlinks.
 	 */
 	public static String activateHyperlinksInString( String string ) {
-
-		if( string == null ) {
-			return null;
-		}
-
-		return string.replaceAll( "(((ht|f)(tp)(s?)://)([a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*(.))?[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*((\\.)[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]{2,5})(/[\\w|\\d|\\.|%|&|;|=|\\?]*)*)(\\S)", "<a href=\"$0\">$0</a>" );
+		return USLinkifier.HYPERLINKS.linkify( string );
 	}
 
 	/**
 	 * Creates a link to each user in a tweet.
 	 */
 	public static String activateTwitterUsersInString( String string ) {
-
-		if( string == null ) {
-			return null;
-		}
-
-		return string.replaceAll( "@(\\w+)", "<a href=\"http://www.twitter.com/$1\">@$1</a>" );
+		return USLinkifier.TWITTER_USERS.linkify( string );
 	}
 
 	/**
@@ -781,7 +1195,10 @@ public class USStringUtilities extends Object {
 	}
 
 	/**
-	 * Takes a dictionary that contains strings, loops though the dictionary's keys and replaces with the values (both strings).
+	 * Takes a dictionary that contains strings, replacing each of the dictionary's keys found in the string with it's value (both strings).
+	 * 
+	 * All keys are replaced in a single pass, see USStringReplacer for details on how overlapping keys are handled.
+	 * When performing the same replacements on many strings, construct a USStringReplacer once and reuse it instead.
 	 * 
 	 * If the replacement dictionary is null, returns the original string unaltered.
 	 */
@@ -794,14 +1211,7 @@ public class USStringUtilities extends Object {
 			return originalString;
 		}
 
-		for( String key : replacements.keySet() ) {
-			if( stringHasValue( key ) ) {
-				String object = replacements.get( key );
-				originalString = replace( originalString, key, object );
-			}
-		}
-
-		return originalString;
+		return new USStringReplacer( replacements ).replace( originalString );
 	}
 
 	/**
@@ -881,6 +1291,21 @@ public class USStringUtilities extends Object {
 	 * @return A formated String representation of the bytes
 	 */
 	public static String formatBytes( double bytes, int minFractions, int maxFractions, String nrNameDivider, boolean showFullName ) {
+		return formatBytes( new StringBuilder( 24 ), bytes, minFractions, maxFractions, nrNameDivider, showFullName ).toString();
+	}
+
+	/**
+	 * Formats bytes into human readable representation of it, appending the result to the given builder.
+	 * 
+	 * @param b The builder to append to
+	 * @param bytes The bytes to format
+	 * @param minFractions Sets the minimum number of digits allowed in the fraction portion of a number
+	 * @param maxFractions Sets the maximum number of digits allowed in the fraction portion of a number
+	 * @param nrNameDivider The string placed between the formated number and the binary symbol/name
+	 * @param showFullName Should the full binary name be shown
+	 * @return The builder
+	 */
+	public static StringBuilder formatBytes( StringBuilder b, double bytes, int minFractions, int maxFractions, String nrNameDivider, boolean showFullName ) {
 		int divCounter = 0;
 		double divBytes = bytes;
 
@@ -889,12 +1314,15 @@ public class USStringUtilities extends Object {
 			divCounter++;
 		}
 
-		String devider = (nrNameDivider == null) ? "" : nrNameDivider;
+		formatDouble( b, divBytes, minFractions, maxFractions, false );
+
+		if( nrNameDivider != null ) {
+			b.append( nrNameDivider );
+		}
 
-		String ret = formatDouble( divBytes, minFractions, maxFractions, false );
-		ret += devider + ((showFullName) ? BINARY_SIZE_NAME[divCounter] : BINARY_SIZE_SYMBOL[divCounter]);
+		b.append( (showFullName) ? BINARY_SIZE_NAME[divCounter] : BINARY_SIZE_SYMBOL[divCounter] );
 
-		return ret;
+		return b;
 	}
 
 	/**
@@ -935,27 +1363,88 @@ public class USStringUtilities extends Object {
 	 * 
 	 * @param number The number to be formated
 	 * @param nrOfDecimalPlaces Number of decimal places to round to
+	 * @param maxNrOfDecimalPlaces Maximum number of decimal places to show
 	 * @param forceDecimalPlaces Should the decimal places be forced, e.g. 1.000,00
 	 * @return A formated String representation of the double number
 	 */
 	public static String formatDouble( double number, int nrOfDecimalPlaces, int maxNrOfDecimalPlaces, boolean forceDecimalPlaces ) {
-		DecimalFormat fmt = new DecimalFormat( ICELANDIC_DECIMAL_FORMAT_PATTERN, ICELANDIC_DECIMAL_FORMAT_SYMBOLS );
+		String formatedNumber = decimalFormat( nrOfDecimalPlaces, maxNrOfDecimalPlaces, forceDecimalPlaces ).format( number );
 
-		if( forceDecimalPlaces ) {
-			fmt.setMinimumFractionDigits( maxNrOfDecimalPlaces );
+		if( formatedNumber.length() > 0 && formatedNumber.charAt( 0 ) == ICELANDIC_DECIMAL_FORMAT_SYMBOLS.getDecimalSeparator() ) {
+			formatedNumber = "0" + formatedNumber;
 		}
-		else {
-			fmt.setMinimumFractionDigits( nrOfDecimalPlaces );
+
+		return formatedNumber;
+	}
+
+	/**
+	 * Formats double into human readable string representation of it, appending the result to the given builder.
+	 * 
+	 * @param b The builder to append to
+	 * @param number The number to be formated
+	 * @param nrOfDecimalPlaces Number of decimal places to round to
+	 * @param maxNrOfDecimalPlaces Maximum number of decimal places to show
+	 * @param forceDecimalPlaces Should the decimal places be forced, e.g. 1.000,00
+	 * @return The builder
+	 */
+	public static StringBuilder formatDouble( StringBuilder b, double number, int nrOfDecimalPlaces, int maxNrOfDecimalPlaces, boolean forceDecimalPlaces ) {
+		DecimalFormatCache cache = decimalFormatCache();
+		StringBuffer buffer = cache.buffer;
+		buffer.setLength( 0 );
+		decimalFormat( nrOfDecimalPlaces, maxNrOfDecimalPlaces, forceDecimalPlaces ).format( number, buffer, cache.fieldPosition );
+
+		if( buffer.length() > 0 && buffer.charAt( 0 ) == ICELANDIC_DECIMAL_FORMAT_SYMBOLS.getDecimalSeparator() ) {
+			b.append( '0' );
 		}
-		fmt.setMaximumFractionDigits( maxNrOfDecimalPlaces );
 
-		String formatedNumber = fmt.format( number );
+		return b.append( buffer );
+	}
 
-		if( formatedNumber.startsWith( ICELANDIC_DECIMAL_FORMAT_SYMBOLS.getDecimalSeparator() + "" ) ) {
-			formatedNumber = "0" + formatedNumber;
+	/**
+	 * @return This thread's formatter for the given number of fraction digits.
+	 */
+	private static DecimalFormat decimalFormat( int nrOfDecimalPlaces, int maxNrOfDecimalPlaces, boolean forceDecimalPlaces ) {
+		int minimumFractionDigits = (forceDecimalPlaces) ? maxNrOfDecimalPlaces : nrOfDecimalPlaces;
+		Long key = ((long)minimumFractionDigits << 32) | (maxNrOfDecimalPlaces & 0xFFFFFFFFL);
+
+		Map<Long, DecimalFormat> formats = decimalFormatCache().formats;
+		DecimalFormat fmt = formats.get( key );
+
+		if( fmt == null ) {
+			fmt = new DecimalFormat( ICELANDIC_DECIMAL_FORMAT_PATTERN, ICELANDIC_DECIMAL_FORMAT_SYMBOLS );
+			fmt.setMinimumFractionDigits( minimumFractionDigits );
+			fmt.setMaximumFractionDigits( maxNrOfDecimalPlaces );
+
+			if( formats.size() < MAXIMUM_CACHED_DECIMAL_FORMATS ) {
+				formats.put( key, fmt );
+			}
 		}
 
-		return formatedNumber;
+		return fmt;
+	}
+
+	/**
+	 * @return This thread's formatter cache, created on first use.
+	 */
+	private static DecimalFormatCache decimalFormatCache() {
+		DecimalFormatCache cache = DECIMAL_FORMAT_CACHE.get();
+
+		if( cache == null ) {
+			cache = new DecimalFormatCache();
+			DECIMAL_FORMAT_CACHE.set( cache );
+		}
+
+		return cache;
+	}
+
+	/**
+	 * A thread's formatters for formatDouble(), keyed by minimum and maximum fraction digits,
+	 * along with a buffer for formatting into a StringBuilder.
+	 */
+	private static class DecimalFormatCache {
+		final Map<Long, DecimalFormat> formats = new HashMap<Long, DecimalFormat>();
+		final StringBuffer buffer = new StringBuffer( 32 );
+		final FieldPosition fieldPosition = new FieldPosition( 0 );
 	}
 
 	/**
@@ -985,10 +1474,11 @@ public class USStringUtilities extends Object {
 	}
 
 	/**
-	 * Un-escapes the most common escaped non-ASCII characters.
+	 * Un-escapes all HTML5 named character references, along with decimal and hexadecimal numeric references.
+	 * See USHTMLEntityDecoder for details.
 	 * 
 	 * @param s String to parse
-	 * @return String with un-escaped non-ascii characters
+	 * @return String with un-escaped characters
 	 */
 	public static final String unescapeHTML( String s ) {
 
@@ -996,46 +1486,7 @@ public class USStringUtilities extends Object {
 			return "";
 		}
 
-		char entitieStart = '&';
-		char entitieStop = ';';
-		StringBuilder out = new StringBuilder();
-		int entityIdx = 0;
-		int entitiesSize = escapeChart.size();
-		String[][] htmlEntities = new String[entitiesSize][2];
-		for( String[] entryVal : escapeChart.values() ) {
-			htmlEntities[entityIdx++] = new String[] { entryVal[1], entryVal[2] };
-		}
-		for( int e = 0; e < htmlEntities.length; e++ ) {
-			// System.out.println( htmlEntities[e][1] );
-		}
-		int lastIdx = 0;
-		// go through the string and find an entitie start char
-		for( int i = 0; i < s.length(); i++ ) {
-			if( s.charAt( i ) == entitieStart ) {
-				// find an entitie stop char
-				for( int j = i + 1; j < s.length(); j++ ) {
-					if( s.charAt( j ) == entitieStop ) {
-						String entitie = s.substring( i, j + 1 );
-						// find an equivalent entry in the htmlEntities array
-						for( int e = 0; e < htmlEntities.length; e++ ) {
-							if( htmlEntities[e][1].equals( entitie ) ) {
-								// substitute the escaped char with the actual char
-								out.append( s.substring( lastIdx, i ) );
-								out.append( htmlEntities[e][0] );
-								lastIdx = j + 1;
-								break;
-							}
-						}
-						break;
-					}
-				}
-			}
-		}
-		// append the rest of the string
-		if( lastIdx < s.length() )
-			out.append( s.substring( lastIdx ) );
-
-		return out.toString();
+		return USHTMLEntityDecoder.decode( s );
 	}
 
 	/**
@@ -1051,20 +1502,61 @@ public class USStringUtilities extends Object {
 		}
 
 		String str = s.toString();
-		StringBuilder buffer = new StringBuilder();
 		int n = str.length();
-		for( int i = 0; i < n; i++ ) {
+		int i = 0;
+
+		while( i < n && escapedHTMLForChar( str.charAt( i ) ) == null ) {
+			i++;
+		}
+
+		if( i == n ) {
+			return str;
+		}
+
+		StringBuilder buffer = new StringBuilder( n + 16 );
+		buffer.append( str, 0, i );
+
+		for( ; i < n; i++ ) {
 			char c = str.charAt( i );
-			if( escapeChart.containsKey( (int)c ) ) {
-				buffer.append( escapeChart.get( (int)c )[2] );
+			String escaped = escapedHTMLForChar( c );
+
+			if( escaped != null ) {
+				buffer.append( escaped );
 			}
 			else {
 				buffer.append( c );
 			}
 		}
+
 		return buffer.toString();
 	}
 
+	/**
+	 * @return The HTML entity for the given character from escapeChart, or null if it does not need escaping.
+	 */
+	static String escapedHTMLForChar( char c ) {
+		return (c < HTML_ESCAPE_TABLE.length) ? HTML_ESCAPE_TABLE[c] : null;
+	}
+
+	/**
+	 * @return A table of the HTML entities in escapeChart, indexed by the character they represent.
+	 */
+	private static String[] htmlEscapeTable() {
+		int size = 0;
+
+		for( Integer c : escapeChart.keySet() ) {
+			size = Math.max( size, c + 1 );
+		}
+
+		String[] table = new String[size];
+
+		for( Map.Entry<Integer, String[]> entry : escapeChart.entrySet() ) {
+			table[entry.getKey()] = entry.getValue()[2];
+		}
+
+		return table;
+	}
+
 	/**
 	 * Creates a complete url, starting with the base url, appending each parameter in query string format.
 	 * 
@@ -1134,27 +1626,67 @@ public class USStringUtilities extends Object {
 	 * @return string after having all of the replacement done.
 	 */
 	private static String replaceStringByStringInString( String old, String newString, String buffer ) {
-		int begin, end;
-		int oldLength = old.length();
-		int length = buffer.length();
-		StringBuilder convertedString = new StringBuilder( length + 100 );
-
-		begin = 0;
-		while( begin < length ) {
-			end = buffer.indexOf( old, begin );
-			if( end == -1 ) {
-				convertedString.append( buffer.substring( begin ) );
-				break;
-			}
-			if( end == 0 )
-				convertedString.append( newString );
-			else {
-				convertedString.append( buffer.substring( begin, end ) );
-				convertedString.append( newString );
+
+		if( old.length() == 0 ) {
+			return buffer;
+		}
+
+		int index = buffer.indexOf( old );
+
+		if( index == -1 ) {
+			return buffer;
+		}
+
+		StringBuilder convertedString = new StringBuilder( buffer.length() + Math.max( 16, newString.length() - old.length() ) );
+		return appendReplaced( buffer, old, newString, index, convertedString ).toString();
+	}
+
+	/**
+	 * Appends the buffer to the given builder, replacing each occurrence of old with newString.
+	 * 
+	 * @param index The index of the first occurrence of old in the buffer.
+	 */
+	private static StringBuilder appendReplaced( CharSequence buffer, String old, String newString, int index, StringBuilder b ) {
+		int begin = 0;
+
+		while( index != -1 ) {
+			b.append( buffer, begin, index );
+			b.append( newString );
+			begin = index + old.length();
+			index = indexOf( buffer, old, begin );
+		}
+
+		b.append( buffer, begin, buffer.length() );
+		return b;
+	}
+
+	/**
+	 * @return The index of the first occurrence of the non-empty string in the buffer at or after fromIndex, or -1 if there is none.
+	 */
+	private static int indexOf( CharSequence buffer, String string, int fromIndex ) {
+
+		if( buffer instanceof String ) {
+			return ((String)buffer).indexOf( string, fromIndex );
+		}
+
+		char first = string.charAt( 0 );
+		int last = buffer.length() - string.length();
+
+		for( int i = fromIndex; i <= last; i++ ) {
+			if( buffer.charAt( i ) == first ) {
+				int j = 1;
+
+				while( j < string.length() && buffer.charAt( i + j ) == string.charAt( j ) ) {
+					j++;
+				}
+
+				if( j == string.length() ) {
+					return i;
+				}
 			}
-			begin = end + oldLength;
 		}
-		return convertedString.toString();
+
+		return -1;
 	}
 
 	/**
@@ -1,7 +1,7 @@
 package is.us;
 
 import is.us.formatters.TestUSPersidnoFormatter;
-import is.us.template.TestUSTemplateSimple;
+import is.us.template.*;
 import is.us.util.*;
 
 import org.junit.runner.RunWith;
@@ -15,5 +15,5 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 
 @RunWith( Suite.class )
-@SuiteClasses( { TestUSDataUtilities.class, TestUSDateUtilities.class, TestUSHolidays.class, TestUSImageUtilities.class, TestUSIPRange.class, TestUSNumberUtilities.class, TestUSPersidnoFormatter.class, TestUSPersidnoUtilities.class, TestUSPhoneUtilities.class, TestUSRoadTaxCalculator.class, TestUSStopWatch.class, TestUSStringUtilities.class, TestUSTemplateSimple.class } )
+@SuiteClasses( { TestUSDataUtilities.class, TestUSDateUtilities.class, TestUSHolidays.class, TestUSHolidayCalendar.class, TestUSHTMLEntityDecoder.class, TestUSHTMLEscapingWriter.class, TestUSHTMLUnescapingReader.class, TestUSImageUtilities.class, TestUSIPRange.class, TestUSNumberUtilities.class, TestUSPersidnoFormatter.class, TestUSPersidnoUtilities.class, TestUSPhoneUtilities.class, TestUSRoadTaxCalculator.class, TestUSStopWatch.class, TestUSStringUtilities.class, TestUSStringReplacer.class, TestUSStringFormatter.class, TestUSLinkifier.class, TestUSSimilarRegnoIndex.class, TestUSDateColumn.class, TestUSFileWriter.class, TestUSHTTPClient.class, TestUSTemplateSimple.class, TestUSCompiledTemplate.class, TestUSTemplateCache.class } )
 public class TestAll {}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package is.us.template;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USCompiledTemplate
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class TestUSCompiledTemplate {
+
+	@Test
+	public void compile() {
+		USCompiledTemplate t = USCompiledTemplate.compile( "Halló ${nafn}, ${kveðja} ${nafn}" );
+		assertEquals( Arrays.asList( "nafn", "kveðja", "nafn" ), t.variableNames() );
+		assertEquals( "Halló ${nafn}, ${kveðja} ${nafn}", t.templateString() );
+
+		assertTrue( USCompiledTemplate.compile( "Engar breytur" ).variableNames().isEmpty() );
+		assertTrue( USCompiledTemplate.compile( "Ólokin ${breyta" ).variableNames().isEmpty() );
+	}
+
+	@Test
+	public void render() {
+		Map<String, Object> vars = new HashMap<String, Object>();
+		vars.put( "nafn", "Hugi" );
+		vars.put( "tala", 42 );
+		vars.put( "ekkert", null );
+
+		assertEquals( "Halló Hugi", USCompiledTemplate.compile( "Halló ${nafn}" ).render( vars ) );
+		assertEquals( "Hugi42Hugi", USCompiledTemplate.compile( "${nafn}${tala}${nafn}" ).render( vars ) );
+		assertEquals( "[]", USCompiledTemplate.compile( "[${ekkert}]" ).render( vars ) );
+		assertEquals( "Halló ${óþekkt}", USCompiledTemplate.compile( "Halló ${óþekkt}" ).render( vars ) );
+		assertEquals( "Ólokin ${nafn", USCompiledTemplate.compile( "Ólokin ${nafn" ).render( vars ) );
+		assertEquals( "", USCompiledTemplate.compile( "" ).render( vars ) );
+		assertEquals( "Halló ${nafn}", USCompiledTemplate.compile( "Halló ${nafn}" ).render( null ) );
+	}
+
+	@Test
+	public void unclosedVariableBeforeVariable() {
+		Map<String, Object> vars = new HashMap<String, Object>();
+		vars.put( "b", "B" );
+
+		USCompiledTemplate t = USCompiledTemplate.compile( "${a ${b}" );
+		assertEquals( Arrays.asList( "b" ), t.variableNames() );
+		assertEquals( "${a B", t.render( vars ) );
+	}
+
+	@Test
+	public void valuesAreNotReparsed() {
+		Map<String, Object> vars = new HashMap<String, Object>();
+		vars.put( "a", "${b}" );
+		vars.put( "b", "B" );
+		assertEquals( "${b}B", USCompiledTemplate.compile( "${a}${b}" ).render( vars ) );
+	}
+
+	@Test
+	public void renderToAppendable() throws IOException {
+		Map<String, Object> vars = new HashMap<String, Object>();
+		vars.put( "nafn", "Hugi" );
+		vars.put( "ekkert", null );
+
+		StringWriter writer = new StringWriter();
+		USCompiledTemplate.compile( "Halló ${nafn}[${ekkert}] ${óþekkt}" ).render( vars, writer );
+		assertEquals( "Halló Hugi[] ${óþekkt}", writer.toString() );
+	}
+}
@@ -0,0 +1,140 @@
+package is.us.template;
+
+import static org.junit.Assert.*;
+
+import is.us.util.USStringUtilities;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for USTemplateCache
+ * 
+ * @author Hugi Þórðarson
+ */
+
+public class TestUSTemplateCache {
+
+	@Test
+	public void templateWithString() {
+		USTemplateCache cache = new USTemplateCache( 10 );
+
+		USCompiledTemplate t1 = cache.templateWithString( "Halló ${nafn}" );
+		USCompiledTemplate t2 = cache.templateWithString( new String( "Halló ${nafn}" ) );
+		assertSame( t1, t2 );
+		assertEquals( 1, cache.hits() );
+		assertEquals( 1, cache.misses() );
+		assertEquals( 1, cache.size() );
+		assertNull( cache.templateWithString( null ) );
+
+		cache.invalidate( "Halló ${nafn}" );
+		assertNotSame( t1, cache.templateWithString( "Halló ${nafn}" ) );
+		assertEquals( 2, cache.misses() );
+	}
+
+	@Test
+	public void leastRecentlyUsedEviction() {
+		USTemplateCache cache = new USTemplateCache( 2 );
+
+		USCompiledTemplate a = cache.templateWithString( "a" );
+		cache.templateWithString( "b" );
+		cache.templateWithString( "a" );
+		cache.templateWithString( "c" );
+
+		assertEquals( 2, cache.size() );
+		assertEquals( 1, cache.evictions() );
+		assertSame( a, cache.templateWithString( "a" ) );
+
+		cache.templateWithString( "b" );
+		assertEquals( 4, cache.misses() );
+		assertEquals( 2, cache.hits() );
+
+		cache.resetStatistics();
+		assertEquals( 0, cache.hits() );
+		assertEquals( 0, cache.misses() );
+		assertEquals( 0, cache.evictions() );
+	}
+
+	@Test
+	public void templateFromFile() throws IOException {
+		USTemplateCache cache = new USTemplateCache( 10 );
+		File file = File.createTempFile( "template", ".txt" );
+
+		try {
+			USStringUtilities.writeStringToFileUsingEncoding( "Halló ${nafn}", file, "UTF-8" );
+			file.setLastModified( 1000000000000L );
+
+			USCompiledTemplate t1 = cache.templateFromFile( file, "UTF-8" );
+			assertEquals( "Halló ${nafn}", t1.templateString() );
+			assertSame( t1, cache.templateFromFile( file, "UTF-8" ) );
+			assertEquals( 1, cache.hits() );
+
+			USStringUtilities.writeStringToFileUsingEncoding( "Bless ${nafn}", file, "UTF-8" );
+			file.setLastModified( 1000000060000L );
+
+			USCompiledTemplate t2 = cache.templateFromFile( file, "UTF-8" );
+			assertEquals( "Bless ${nafn}", t2.templateString() );
+			assertEquals( 2, cache.misses() );
+			assertEquals( 1, cache.size() );
+		}
+		finally {
+			file.delete();
+		}
+
+		assertNull( cache.templateFromFile( file, "UTF-8" ) );
+		assertEquals( 0, cache.size() );
+	}
+
+	@Test
+	public void lengthBound() {
+		USTemplateCache cache = new USTemplateCache( 10, 10 );
+
+		USCompiledTemplate a = cache.templateWithString( "aaaa" );
+		cache.templateWithString( "bbbb" );
+		assertEquals( 8, cache.length() );
+
+		cache.templateWithString( "aaaa" );
+		cache.templateWithString( "cccc" );
+		assertEquals( 2, cache.size() );
+		assertEquals( 8, cache.length() );
+		assertEquals( 1, cache.evictions() );
+		assertSame( a, cache.templateWithString( "aaaa" ) );
+
+		cache.templateWithString( "Of langt sniðmát" );
+		assertEquals( 2, cache.size() );
+		assertEquals( 8, cache.length() );
+
+		cache.invalidate( "aaaa" );
+		assertEquals( 4, cache.length() );
+		cache.clear();
+		assertEquals( 0, cache.length() );
+	}
+
+	@Test
+	public void templateFromFileWithAnotherEncoding() throws IOException {
+		USTemplateCache cache = new USTemplateCache( 10 );
+		File file = File.createTempFile( "template", ".txt" );
+
+		try {
+			USStringUtilities.writeStringToFileUsingEncoding( "Halló ${nafn}", file, "UTF-8" );
+
+			assertEquals( "Halló ${nafn}", cache.templateFromFile( file, null ).templateString() );
+			assertEquals( "Halló ${nafn}", cache.templateFromFile( file, "UTF-8" ).templateString() );
+			assertEquals( 1, cache.hits() );
+
+			assertEquals( "HallÃ³ ${nafn}", cache.templateFromFile( file, "ISO-8859-1" ).templateString() );
+			assertEquals( 2, cache.misses() );
+			assertEquals( 1, cache.size() );
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidMaximumSize() {
+		new USTemplateCache( 0 );
+	}
+}
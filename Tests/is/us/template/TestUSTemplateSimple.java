@@ -1,7 +1,8 @@
 package is.us.template;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
+import java.io.*;
 import java.util.*;
 
 import org.junit.Test;
@@ -25,6 +26,53 @@ public class TestUSTemplateSimple {
 		testOne( "${nafn-1} borðar ${nafn-2} í morgunmat.", vars, "Hugi Þórðarson borðar Chuck Norris í morgunmat." );
 	}
 
+	@Test
+	public void setTemplateString() {
+		USTemplate template = new USTemplateSimple();
+		template.put( "nafn", "Hugi" );
+		assertNull( template.parse() );
+
+		template.setTemplateString( "Halló ${nafn}" );
+		assertEquals( "Halló Hugi", template.parse() );
+
+		template.setTemplateString( "Bless ${nafn}" );
+		assertEquals( "Bless Hugi", template.parse() );
+	}
+
+	@Test
+	public void sharedCompiledTemplate() {
+		USCompiledTemplate compiled = USCompiledTemplate.compile( "Halló ${nafn}" );
+
+		USTemplate template1 = new USTemplateSimple( compiled );
+		template1.put( "nafn", "Hugi" );
+
+		USTemplate template2 = new USTemplateSimple( compiled );
+		template2.put( "nafn", "Logi" );
+
+		assertEquals( "Halló Hugi", template1.parse() );
+		assertEquals( "Halló Logi", template2.parse() );
+		assertEquals( "Halló ${nafn}", template2.templateString() );
+	}
+
+	@Test
+	public void parseToStream() throws IOException {
+		USTemplate template = new USTemplateSimple();
+		template.setTemplateString( "Halló ${nafn}" );
+		template.put( "nafn", "Hugi Þórðarson" );
+
+		StringWriter writer = new StringWriter();
+		template.parse( writer );
+		assertEquals( "Halló Hugi Þórðarson", writer.toString() );
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		template.parse( out, "ISO-8859-1" );
+		assertEquals( "Halló Hugi Þórðarson", new String( out.toByteArray(), "ISO-8859-1" ) );
+
+		out = new ByteArrayOutputStream();
+		template.parse( out, null );
+		assertEquals( "Halló Hugi Þórðarson", new String( out.toByteArray(), "UTF-8" ) );
+	}
+
 	private void testOne( String templateString, Map<String, Object> vars, String expectedResult ) {
 		USTemplate template = new USTemplateSimple();
 		template.setTemplateString( templateString );
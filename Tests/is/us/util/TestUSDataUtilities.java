@@ -3,6 +3,7 @@ package is.us.util;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.nio.*;
 
 import org.junit.Test;
 
@@ -38,4 +39,89 @@ public class TestUSDataUtilities {
 
 		testFile.delete();
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void readBytesFromStream() throws IOException {
+		byte[] data = new byte[100000];
+
+		for( int i = 0; i < data.length; i++ ) {
+			data[i] = (byte)(i * 31);
+		}
+
+		int[] hints = { -1, 0, 1, 99999, 100000, 100001, 1000000 };
+
+		for( int hint : hints ) {
+			assertArrayEquals( data, USDataUtilities.readBytesFromStream( new ByteArrayInputStream( data ), hint ) );
+		}
+
+		assertArrayEquals( data, USDataUtilities.readBytesFromStream( new ByteArrayInputStream( data ) ) );
+		assertArrayEquals( new byte[0], USDataUtilities.readBytesFromStream( new ByteArrayInputStream( new byte[0] ) ) );
+	}
+
+	@Test
+	public void readByteBufferFromStream() {
+		byte[] data = "testString þjóðarþýðingin".getBytes();
+		ByteBuffer buffer = USDataUtilities.readByteBufferFromStream( new ByteArrayInputStream( data ), 1000 );
+		assertEquals( 0, buffer.position() );
+		assertEquals( data.length, buffer.remaining() );
+
+		byte[] read = new byte[buffer.remaining()];
+		buffer.get( read );
+		assertArrayEquals( data, read );
+	}
+
+	@Test
+	public void mapCopyAndChunks() throws IOException {
+		File source = File.createTempFile( "source", ".bin" );
+		File copy = File.createTempFile( "copy", ".bin" );
+
+		try {
+			byte[] data = new byte[100000];
+
+			for( int i = 0; i < data.length; i++ ) {
+				data[i] = (byte)(i * 31);
+			}
+
+			USDataUtilities.writeBytesToFile( data, source );
+
+			MappedByteBuffer mapped = USDataUtilities.mapFile( source );
+			byte[] mappedBytes = new byte[mapped.remaining()];
+			mapped.get( mappedBytes );
+			assertArrayEquals( data, mappedBytes );
+
+			assertTrue( USDataUtilities.copyFile( source, copy ) );
+			assertArrayEquals( data, USDataUtilities.readBytesFromFile( copy ) );
+
+			final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+			final int[] numberOfChunks = { 0 };
+
+			long read = USDataUtilities.readFileInChunks( source, 4096, new USDataUtilities.ChunkHandler() {
+				public void handleChunk( ByteBuffer chunk ) {
+					assertTrue( chunk.remaining() <= 4096 );
+					byte[] bytes = new byte[chunk.remaining()];
+					chunk.get( bytes );
+					chunks.write( bytes, 0, bytes.length );
+					numberOfChunks[0]++;
+				}
+			} );
+
+			assertEquals( data.length, read );
+			assertEquals( 25, numberOfChunks[0] );
+			assertArrayEquals( data, chunks.toByteArray() );
+
+			assertNull( USDataUtilities.mapFile( new File( "/no/such/file" ) ) );
+			assertFalse( USDataUtilities.copyFile( new File( "/no/such/file" ), copy ) );
+		}
+		finally {
+			source.delete();
+			copy.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void readFileInChunksWithoutChunkSize() {
+		USDataUtilities.readFileInChunks( new File( "/no/such/file" ), 0, new USDataUtilities.ChunkHandler() {
+			public void handleChunk( ByteBuffer chunk ) {}
+		} );
+	}
+}
@@ -0,0 +1,97 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USDateColumn.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSDateColumn {
+
+	@Test
+	public void addAndGet() {
+		USDateColumn column = new USDateColumn( 1 );
+		column.add( USDateUtilities.date( 2009, 6, 17 ) );
+		column.add( (Date)null );
+		column.add( 0 );
+
+		assertEquals( 3, column.size() );
+		assertEquals( USDateUtilities.epochDay( 2009, 6, 17 ), column.get( 0 ) );
+		assertEquals( USDateColumn.NO_DATE, column.get( 1 ) );
+		assertEquals( USDateUtilities.date( 2009, 6, 17 ), column.date( 0 ) );
+		assertNull( column.date( 1 ) );
+		assertEquals( USDateUtilities.date( 1970, 1, 1 ), column.date( 2 ) );
+
+		column.set( 1, 1 );
+		assertArrayEquals( new int[] { USDateUtilities.epochDay( 2009, 6, 17 ), 1, 0 }, column.toArray() );
+
+		try {
+			column.get( 3 );
+			fail();
+		}
+		catch( IndexOutOfBoundsException e ) {}
+	}
+
+	@Test
+	public void birthdatesFromPersidnos() {
+		USDateColumn column = USDateColumn.birthdatesFromPersidnos( new String[] { "091179 4829", "0101302989", null, "5001012880", "0911abc829", "09", "", "-" } );
+
+		assertEquals( USDateUtilities.epochDay( 1979, 11, 9 ), column.get( 0 ) );
+		assertEquals( USDateUtilities.epochDay( 1930, 1, 1 ), column.get( 1 ) );
+
+		for( int i = 2; i < column.size(); i++ ) {
+			assertEquals( USDateColumn.NO_DATE, column.get( i ) );
+		}
+
+		assertArrayEquals( new int[] { 30, 79, -1, -1, -1, -1, -1, -1 }, column.agesAt( USDateUtilities.epochDay( 2009, 11, 9 ) ) );
+	}
+
+	@Test
+	public void daysUntil() {
+		USDateColumn column = new USDateColumn( new int[] { 10, USDateColumn.NO_DATE, 30 } );
+		USDateColumn other = new USDateColumn( new int[] { 15, 20, USDateColumn.NO_DATE } );
+
+		assertArrayEquals( new int[] { 10, Integer.MIN_VALUE, -10 }, column.daysUntil( 20 ) );
+		assertArrayEquals( new int[] { 5, Integer.MIN_VALUE, Integer.MIN_VALUE }, column.daysUntil( other ) );
+
+		try {
+			column.daysUntil( new USDateColumn() );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+	}
+
+	@Test
+	public void masksMatchDateUtilities() {
+		List<Date> dates = new ArrayList<Date>();
+
+		for( int i = 0; i < 1000; i++ ) {
+			dates.add( USDateUtilities.date( 2008, 12, 1 + i ) );
+		}
+
+		dates.add( null );
+		USDateColumn column = USDateColumn.fromDates( dates );
+		boolean[] weekend = column.weekendMask();
+		boolean[] weekday = column.weekdayMask();
+		boolean[] holiday = column.holidayMask();
+		boolean[] fullHoliday = column.fullHolidayMask();
+		boolean[] workday = column.workdayMask();
+
+		for( int i = 0; i < 1000; i++ ) {
+			Date date = dates.get( i );
+			assertEquals( USDateUtilities.isWeekend( date ), weekend[i] );
+			assertEquals( USDateUtilities.isWeekday( date ), weekday[i] );
+			assertEquals( USHolidays.isHoliday( date ), holiday[i] );
+			assertEquals( USHolidays.isFullHoliday( date ), fullHoliday[i] );
+			assertEquals( USDateUtilities.isWorkday( date ), workday[i] );
+		}
+
+		assertFalse( weekend[1000] || weekday[1000] || holiday[1000] || fullHoliday[1000] || workday[1000] );
+	}
+}
@@ -172,4 +172,175 @@ public class TestUSDateUtilities {
 		}
 
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void epochDay() {
+		assertEquals( 0, USDateUtilities.epochDay( 1970, 1, 1 ) );
+		assertEquals( -1, USDateUtilities.epochDay( 1969, 12, 31 ) );
+		assertEquals( 11016, USDateUtilities.epochDay( 2000, 2, 29 ) );
+		assertEquals( 1969, USDateUtilities.yearOfEpochDay( -1 ) );
+		assertEquals( 2000, USDateUtilities.yearOfEpochDay( 11016 ) );
+
+		GregorianCalendar c = USDateUtilities.cal();
+		c.set( 1900, GregorianCalendar.JANUARY, 1 );
+
+		while( c.get( GregorianCalendar.YEAR ) < 2100 ) {
+			int year = c.get( GregorianCalendar.YEAR );
+			int epochDay = USDateUtilities.epochDay( year, c.get( GregorianCalendar.MONTH ) + 1, c.get( GregorianCalendar.DAY_OF_MONTH ) );
+			assertEquals( epochDay, USDateUtilities.epochDay( c.getTime() ) );
+			assertEquals( year, USDateUtilities.yearOfEpochDay( epochDay ) );
+			c.add( GregorianCalendar.DAY_OF_MONTH, 1 );
+		}
+	}
+
+	@Test
+	public void epochDayInTimeZone() {
+		TimeZone utc = TimeZone.getTimeZone( "UTC" );
+		TimeZone reykjavik = TimeZone.getTimeZone( "Atlantic/Reykjavik" );
+		TimeZone newYork = TimeZone.getTimeZone( "America/New_York" );
+
+		assertEquals( 0, USDateUtilities.epochDay( 0, utc ) );
+		assertEquals( -1, USDateUtilities.epochDay( -1, utc ) );
+		assertEquals( -1, USDateUtilities.epochDay( 0, newYork ) );
+		assertEquals( 0, USDateUtilities.epochDay( 0, reykjavik ) );
+	}
+
+	@Test
+	public void dayOfWeek() {
+		GregorianCalendar c = USDateUtilities.cal();
+		c.set( 1960, GregorianCalendar.JANUARY, 1 );
+
+		for( int i = 0; i < 30000; i++ ) {
+			assertEquals( c.get( GregorianCalendar.DAY_OF_WEEK ), USDateUtilities.dayOfWeek( USDateUtilities.epochDay( c.getTime() ) ) );
+			c.add( GregorianCalendar.DAY_OF_MONTH, 1 );
+		}
+	}
+
+	@Test
+	public void addWorkdays() {
+		// Maundy Thursday 2009 is April 9th, and Easter Monday April 13th.
+		assertEquals( USDateUtilities.date( 2009, 4, 14 ), USDateUtilities.addWorkdays( USDateUtilities.date( 2009, 4, 8 ), 1 ) );
+		assertEquals( USDateUtilities.date( 2009, 4, 8 ), USDateUtilities.addWorkdays( USDateUtilities.date( 2009, 4, 14 ), -1 ) );
+		assertEquals( USDateUtilities.date( 2009, 4, 8 ), USDateUtilities.addWorkdays( USDateUtilities.date( 2009, 4, 7 ), 1 ) );
+		assertEquals( USDateUtilities.date( 2009, 4, 11 ), USDateUtilities.addWorkdays( USDateUtilities.date( 2009, 4, 11 ), 0 ) );
+		// Christmas Eve is only a partial holiday, so it's a workday.
+		assertEquals( USDateUtilities.date( 2009, 12, 28 ), USDateUtilities.addWorkdays( USDateUtilities.date( 2009, 12, 23 ), 2 ) );
+	}
+
+	@Test
+	@SuppressWarnings( "deprecation" )
+	public void nextWorkDay() {
+		assertEquals( USDateUtilities.date( 2009, 4, 14 ), new USDateUtilities().nextWorkDay( USDateUtilities.date( 2009, 4, 8 ) ) );
+		// nextWorkDay() also works outside the years handled by addWorkdays().
+		assertEquals( USDateUtilities.date( 1850, 12, 27 ), new USDateUtilities().nextWorkDay( USDateUtilities.date( 1850, 12, 24 ) ) );
+		assertEquals( USDateUtilities.date( 2250, 1, 2 ), new USDateUtilities().nextWorkDay( USDateUtilities.date( 2249, 12, 31 ) ) );
+	}
+
+	@Test
+	public void workdaysMatchIteration() {
+		// A Saturday, so the first workday after it is the first one counted.
+		Date start = USDateUtilities.date( 2008, 12, 20 );
+		int workdays = 0;
+
+		for( int i = 0; i < 800; i++ ) {
+			Date date = USDateUtilities.date( 2008, 12, 20 + i );
+			assertEquals( workdays, USDateUtilities.workdaysBetween( start, date ) );
+			assertEquals( -workdays, USDateUtilities.workdaysBetween( date, start ) );
+
+			if( USDateUtilities.isWorkday( date ) ) {
+				workdays++;
+				assertEquals( date, USDateUtilities.addWorkdays( start, workdays ) );
+				assertEquals( USDateUtilities.addWorkdays( start, 1 ), USDateUtilities.addWorkdays( date, 1 - workdays ) );
+			}
+		}
+
+		assertEquals( 0, USDateUtilities.workdaysBetween( start, start ) );
+	}
+
+	@Test
+	public void workdaysSpanningCenturies() {
+		int from = USDateUtilities.epochDay( 1900, 1, 1 );
+		int to = USDateUtilities.epochDay( 2200, 1, 1 );
+		int workdays = USHolidays.workdaysBetween( from, to );
+
+		assertEquals( USHolidays.addWorkdays( from - 1, workdays ), USHolidays.addWorkdays( to, -1 ) );
+		assertEquals( workdays - 1, USHolidays.workdaysBetween( USHolidays.addWorkdays( from - 1, 1 ), USHolidays.addWorkdays( to, -1 ) ) );
+
+		try {
+			USHolidays.workdaysBetween( from - 1, to );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+	}
+
+	@Test
+	public void epochDayFields() {
+		int epochDay = USDateUtilities.epochDay( 2000, 2, 29 );
+		assertEquals( 2000, USDateUtilities.yearOfEpochDay( epochDay ) );
+		assertEquals( 2, USDateUtilities.monthOfEpochDay( epochDay ) );
+		assertEquals( 29, USDateUtilities.dayOfMonthOfEpochDay( epochDay ) );
+
+		assertEquals( USDateUtilities.epochDay( 2001, 1, 1 ), USDateUtilities.epochDay( 2000, 13, 1 ) );
+		assertEquals( USDateUtilities.epochDay( 1999, 12, 31 ), USDateUtilities.epochDay( 2000, 1, 0 ) );
+		assertEquals( USDateUtilities.epochDay( 1999, 11, 30 ), USDateUtilities.epochDay( 2000, -1, 30 ) );
+
+		assertEquals( 12, USDateUtilities.monthOfEpochDay( -1 ) );
+		assertEquals( 31, USDateUtilities.dayOfMonthOfEpochDay( -1 ) );
+	}
+
+	@Test
+	public void ageAtEpochDay() {
+		int birth = USDateUtilities.epochDay( 2000, 2, 29 );
+		assertEquals( 0, USDateUtilities.ageAtEpochDay( birth, USDateUtilities.epochDay( 2001, 2, 28 ) ) );
+		assertEquals( 1, USDateUtilities.ageAtEpochDay( birth, USDateUtilities.epochDay( 2001, 3, 1 ) ) );
+		assertEquals( 4, USDateUtilities.ageAtEpochDay( birth, USDateUtilities.epochDay( 2004, 2, 29 ) ) );
+		assertEquals( 9, USDateUtilities.ageAtEpochDay( birth, USDateUtilities.epochDay( 2010, 1, 31 ) ) );
+	}
+
+	/**
+	 * The Date methods work from epoch days, except close to changes in the time zone's offset.
+	 * They must give the same results as GregorianCalendar, also in time zones where days don't always start at midnight.
+	 */
+	@Test
+	public void dateMethodsMatchCalendarInAllTimeZones() {
+		String[] timeZones = { "Atlantic/Reykjavik", "UTC", "Europe/London", "America/New_York", "America/Sao_Paulo", "Pacific/Apia", "Australia/Lord_Howe", "Asia/Kathmandu" };
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		Random random = new Random( 0 );
+
+		try {
+			for( String timeZone : timeZones ) {
+				TimeZone.setDefault( TimeZone.getTimeZone( timeZone ) );
+
+				for( int i = 0; i < 5000; i++ ) {
+					int year = 1500 + random.nextInt( 600 );
+					int month = random.nextInt( 14 );
+					int day = random.nextInt( 33 );
+
+					GregorianCalendar expected = new GregorianCalendar();
+					expected.clear();
+					expected.set( year, month - 1, day );
+					assertEquals( timeZone, expected.getTime(), USDateUtilities.date( year, month, day ) );
+
+					Date date = new Date( (long)(random.nextDouble() * 1.6e13) - 12500000000000L );
+					int days = random.nextInt( 2000 ) - 1000;
+
+					expected.setTime( date );
+					assertEquals( timeZone, expected.get( Calendar.YEAR ), USDateUtilities.year( date ) );
+					assertEquals( timeZone, expected.get( Calendar.MONTH ) + 1, USDateUtilities.monthOfYear( date ) );
+					assertEquals( timeZone, expected.get( Calendar.DAY_OF_MONTH ), USDateUtilities.dayOfMonth( date ) );
+					assertEquals( timeZone, expected.get( Calendar.DAY_OF_WEEK ) != Calendar.SATURDAY && expected.get( Calendar.DAY_OF_WEEK ) != Calendar.SUNDAY, USDateUtilities.isWeekday( date ) );
+
+					expected.add( Calendar.DAY_OF_MONTH, days );
+					assertEquals( timeZone, expected.getTime(), USDateUtilities.addDays( date, days ) );
+
+					expected.setTime( date );
+					USDateUtilities.normalizeToMidnight( expected );
+					assertEquals( timeZone, expected.getTime(), USDateUtilities.normalizeToMidnight( date ) );
+				}
+			}
+		}
+		finally {
+			TimeZone.setDefault( defaultTimeZone );
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+/**
+ * Tests for USFileWriter.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSFileWriter {
+
+	private File _directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		_directory = File.createTempFile( "USFileWriter", "" );
+		_directory.delete();
+		_directory.mkdir();
+	}
+
+	@After
+	public void deleteDirectory() {
+		for( File file : _directory.listFiles() ) {
+			file.delete();
+		}
+
+		_directory.delete();
+	}
+
+	@Test
+	public void write() throws IOException {
+		File file = new File( _directory, "a.txt" );
+		USFileWriter writer = new USFileWriter( true );
+
+		writer.write( file, "fyrsta útgáfa".getBytes( "UTF-8" ) );
+		assertEquals( "fyrsta útgáfa", USStringUtilities.readStringFromFileUsingEncoding( file, "UTF-8" ) );
+
+		writer.write( file, "önnur".getBytes( "UTF-8" ) );
+		assertEquals( "önnur", USStringUtilities.readStringFromFileUsingEncoding( file, "UTF-8" ) );
+
+		assertEquals( Arrays.asList( "a.txt" ), Arrays.asList( _directory.list() ) );
+	}
+
+	@Test
+	public void gatheringWrite() throws IOException {
+		File file = new File( _directory, "b.txt" );
+		ByteBuffer header = ByteBuffer.wrap( "haus,".getBytes( "UTF-8" ) );
+		ByteBuffer body = ByteBuffer.wrap( "xxmegintexti".getBytes( "UTF-8" ) );
+		body.position( 2 );
+
+		new USFileWriter( false ).write( file, header, body );
+		assertEquals( "haus,megintexti", USStringUtilities.readStringFromFileUsingEncoding( file, "UTF-8" ) );
+		assertEquals( 0, header.position() );
+		assertEquals( 2, body.position() );
+	}
+
+	@Test
+	public void writeStream() throws IOException {
+		File file = new File( _directory, "c.bin" );
+		byte[] data = new byte[100000];
+		new Random( 1 ).nextBytes( data );
+
+		new USFileWriter( false ).write( file, new ByteArrayInputStream( data ) );
+		assertArrayEquals( data, USDataUtilities.readBytesFromFile( file ) );
+	}
+
+	@Test
+	public void failedWriteLeavesDestinationUnchanged() throws IOException {
+		File file = new File( _directory, "d.txt" );
+		USFileWriter writer = new USFileWriter( false );
+		writer.write( file, "óbreytt".getBytes( "UTF-8" ) );
+
+		InputStream failing = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException( "Failure" );
+			}
+		};
+
+		try {
+			writer.write( file, failing );
+			fail( "Expected an IOException" );
+		}
+		catch( IOException e ) {}
+
+		assertEquals( "óbreytt", USStringUtilities.readStringFromFileUsingEncoding( file, "UTF-8" ) );
+		assertEquals( Arrays.asList( "d.txt" ), Arrays.asList( _directory.list() ) );
+	}
+
+	@Test
+	public void writeAsync() throws Exception {
+		USFileWriter writer = new USFileWriter( false );
+		List<Future<File>> futures = new ArrayList<Future<File>>();
+
+		for( int i = 0; i < 100; i++ ) {
+			futures.add( writer.writeAsync( new File( _directory, "async" + (i % 10) + ".txt" ), String.valueOf( i ).getBytes( "UTF-8" ) ) );
+		}
+
+		for( Future<File> future : futures ) {
+			assertTrue( future.get().exists() );
+		}
+
+		writer.close();
+
+		for( int i = 0; i < 10; i++ ) {
+			assertEquals( String.valueOf( 90 + i ), USStringUtilities.readStringFromFileUsingEncoding( new File( _directory, "async" + i + ".txt" ), "UTF-8" ) );
+		}
+
+		try {
+			writer.writeAsync( new File( _directory, "closed.txt" ), new byte[0] );
+			fail( "Expected a RejectedExecutionException" );
+		}
+		catch( RejectedExecutionException e ) {}
+	}
+}
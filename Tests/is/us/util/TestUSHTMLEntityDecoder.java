@@ -0,0 +1,69 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USHTMLEntityDecoder.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSHTMLEntityDecoder {
+
+	@Test
+	public void namedReferences() {
+		assertEquals( "öll lífsins gæði", USHTMLEntityDecoder.decode( "&ouml;ll l&iacute;fsins g&aelig;&eth;i" ) );
+		assertEquals( "<a href=\"x\">", USHTMLEntityDecoder.decode( "&lt;a href=&quot;x&quot;&gt;" ) );
+		assertEquals( "Æ & Þ", USHTMLEntityDecoder.decode( "&AElig; &amp; &THORN;" ) );
+		assertEquals( "\u2233", USHTMLEntityDecoder.decode( "&CounterClockwiseContourIntegral;" ) );
+		assertEquals( "\u2242\u0338", USHTMLEntityDecoder.decode( "&NotEqualTilde;" ) );
+		assertEquals( "\uD835\uDD04", USHTMLEntityDecoder.decode( "&Afr;" ) );
+		assertEquals( "a\nb", USHTMLEntityDecoder.decode( "a&NewLine;b" ) );
+	}
+
+	@Test
+	public void numericReferences() {
+		assertEquals( "á", USHTMLEntityDecoder.decode( "&#225;" ) );
+		assertEquals( "á", USHTMLEntityDecoder.decode( "&#xE1;" ) );
+		assertEquals( "á", USHTMLEntityDecoder.decode( "&#X00e1;" ) );
+		assertEquals( "\uD83D\uDE00", USHTMLEntityDecoder.decode( "&#x1F600;" ) );
+		assertEquals( "€", USHTMLEntityDecoder.decode( "&#128;" ) );
+		assertEquals( "\uFFFD", USHTMLEntityDecoder.decode( "&#0;" ) );
+		assertEquals( "\uFFFD", USHTMLEntityDecoder.decode( "&#xD800;" ) );
+		assertEquals( "\uFFFD", USHTMLEntityDecoder.decode( "&#x110000;" ) );
+		assertEquals( "\uFFFD", USHTMLEntityDecoder.decode( "&#99999999999999999999;" ) );
+	}
+
+	@Test
+	public void invalidReferencesAreLeftAsTheyAre() {
+		String[] strings = new String[] { "&", "&;", "&#;", "&#x;", "&amp", "&#12", "&#12a;", "&unknown;", "& amp;", "&&", "a & b", "&#x1G;" };
+
+		for( String s : strings ) {
+			assertSame( s, USHTMLEntityDecoder.decode( s ) );
+		}
+
+		assertEquals( "&&", USHTMLEntityDecoder.decode( "&&amp;" ) );
+		assertEquals( "&amp &", USHTMLEntityDecoder.decode( "&amp &amp;" ) );
+		assertEquals( "&unknown; <", USHTMLEntityDecoder.decode( "&unknown; &lt;" ) );
+	}
+
+	@Test
+	public void decode() {
+		String s = "no references here";
+		assertSame( s, USHTMLEntityDecoder.decode( s ) );
+		assertNull( USHTMLEntityDecoder.decode( null ) );
+		assertEquals( "", USHTMLEntityDecoder.decode( "" ) );
+	}
+
+	@Test
+	public void decodeEntity() {
+		StringBuilder b = new StringBuilder();
+		assertEquals( 6, USHTMLEntityDecoder.decodeEntity( "x&amp;y", 1, 7, b ) );
+		assertEquals( "&", b.toString() );
+		assertEquals( -1, USHTMLEntityDecoder.decodeEntity( "x&amp;y", 1, 5, b ) );
+		assertEquals( -1, USHTMLEntityDecoder.decodeEntity( "x&amp;y", 0, 7, b ) );
+		assertEquals( "&", b.toString() );
+	}
+}
@@ -0,0 +1,55 @@
+package is.us.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USHTMLEscapingWriter.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSHTMLEscapingWriter {
+
+	@Test
+	public void write() throws IOException {
+		String[] strings = new String[] { "öll lífsins gæði", "&ouml;ll l&iacute;fsins", "a < b > c", "nothing to escape", "", "€" };
+
+		for( String s : strings ) {
+			StringWriter out = new StringWriter();
+			Writer writer = new USHTMLEscapingWriter( out );
+			writer.write( s );
+			writer.flush();
+			assertEquals( USStringUtilities.escapeHTML( s ), out.toString() );
+
+			out = new StringWriter();
+			writer = new USHTMLEscapingWriter( out );
+			writer.write( s.toCharArray() );
+			writer.flush();
+			assertEquals( USStringUtilities.escapeHTML( s ), out.toString() );
+
+			out = new StringWriter();
+			writer = new USHTMLEscapingWriter( out );
+
+			for( int i = 0; i < s.length(); i++ ) {
+				writer.write( s.charAt( i ) );
+			}
+
+			writer.flush();
+			assertEquals( USStringUtilities.escapeHTML( s ), out.toString() );
+		}
+	}
+
+	@Test
+	public void writePartOfString() throws IOException {
+		StringWriter out = new StringWriter();
+		Writer writer = new USHTMLEscapingWriter( out );
+		writer.write( "xxöll lífsinsxx", 2, 11 );
+		writer.write( "xx<xx".toCharArray(), 2, 1 );
+		writer.close();
+		assertEquals( "&ouml;ll l&iacute;fsins&lt;", out.toString() );
+	}
+}
@@ -0,0 +1,88 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USHTMLUnescapingReader.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSHTMLUnescapingReader {
+
+	private static final String[] STRINGS = new String[] { "&ouml;ll l&iacute;fsins g&aelig;&eth;i", "&amp;ouml;ll", "&#225;&#xE1;&#x1F600;", "& &; &amp &unknown;", "&&&amp;", "trailing &", "nothing to unescape", "" };
+
+	@Test
+	public void read() throws IOException {
+		for( String s : STRINGS ) {
+			assertEquals( USStringUtilities.unescapeHTML( s ), readAll( new USHTMLUnescapingReader( new StringReader( s ) ), 1024 ) );
+		}
+	}
+
+	@Test
+	public void readSingleCharacters() throws IOException {
+		for( String s : STRINGS ) {
+			Reader reader = new USHTMLUnescapingReader( new OneCharacterReader( s ) );
+			StringBuilder b = new StringBuilder();
+
+			for( int c; (c = reader.read()) != -1; ) {
+				b.append( (char)c );
+			}
+
+			assertEquals( USStringUtilities.unescapeHTML( s ), b.toString() );
+		}
+	}
+
+	@Test
+	public void referencesAcrossChunks() throws IOException {
+		StringBuilder b = new StringBuilder();
+
+		while( b.length() < 50000 ) {
+			b.append( "abc&ouml;d&#x1F600;e&CounterClockwiseContourIntegral;&amp;" );
+		}
+
+		String s = b.toString();
+		assertEquals( USStringUtilities.unescapeHTML( s ), readAll( new USHTMLUnescapingReader( new StringReader( s ) ), 7 ) );
+		assertEquals( USStringUtilities.unescapeHTML( s ), readAll( new USHTMLUnescapingReader( new OneCharacterReader( s ) ), 4096 ) );
+	}
+
+	@Test
+	public void skip() throws IOException {
+		Reader reader = new USHTMLUnescapingReader( new StringReader( "&ouml;&ouml;ll" ) );
+		assertEquals( 2, reader.skip( 2 ) );
+		assertEquals( "ll", readAll( reader, 10 ) );
+		assertEquals( 0, reader.skip( 10 ) );
+		assertFalse( reader.markSupported() );
+	}
+
+	private static String readAll( Reader reader, int chunkSize ) throws IOException {
+		StringBuilder b = new StringBuilder();
+		char[] buffer = new char[chunkSize];
+
+		for( int n; (n = reader.read( buffer )) != -1; ) {
+			b.append( buffer, 0, n );
+		}
+
+		reader.close();
+		return b.toString();
+	}
+
+	/**
+	 * Returns one character per read, to test references split between reads.
+	 */
+	private static class OneCharacterReader extends StringReader {
+
+		public OneCharacterReader( String s ) {
+			super( s );
+		}
+
+		@Override
+		public int read( char[] cbuf, int off, int len ) throws IOException {
+			return super.read( cbuf, off, Math.min( len, 1 ) );
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * Tests for USHTTPClient, using an embedded HTTP server.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSHTTPClient {
+
+	private static final String DOCUMENT = "Hæ, hvað segirðu? ";
+
+	private HttpServer _server;
+	private String _baseURL;
+	private final Set<Integer> _clientPorts = Collections.synchronizedSet( new HashSet<Integer>() );
+
+	@Before
+	public void startServer() throws IOException {
+		_server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+
+		_server.createContext( "/plain", new HttpHandler() {
+			public void handle( HttpExchange exchange ) throws IOException {
+				_clientPorts.add( exchange.getRemoteAddress().getPort() );
+				respond( exchange, 200, document().getBytes( "UTF-8" ), false );
+			}
+		} );
+
+		_server.createContext( "/gzip", new HttpHandler() {
+			public void handle( HttpExchange exchange ) throws IOException {
+				String acceptEncoding = exchange.getRequestHeaders().getFirst( "Accept-Encoding" );
+				respond( exchange, 200, document().getBytes( "UTF-8" ), acceptEncoding != null && acceptEncoding.contains( "gzip" ) );
+			}
+		} );
+
+		_server.createContext( "/chunked", new HttpHandler() {
+			public void handle( HttpExchange exchange ) throws IOException {
+				exchange.sendResponseHeaders( 200, 0 );
+				OutputStream out = exchange.getResponseBody();
+				out.write( document().getBytes( "UTF-8" ) );
+				out.close();
+			}
+		} );
+
+		_server.createContext( "/missing", new HttpHandler() {
+			public void handle( HttpExchange exchange ) throws IOException {
+				respond( exchange, 404, "Not found".getBytes( "UTF-8" ), false );
+			}
+		} );
+
+		_server.createContext( "/slow", new HttpHandler() {
+			public void handle( HttpExchange exchange ) throws IOException {
+				try {
+					Thread.sleep( 1000 );
+				}
+				catch( InterruptedException e ) {}
+
+				respond( exchange, 200, new byte[0], false );
+			}
+		} );
+
+		_server.start();
+		_baseURL = "http://127.0.0.1:" + _server.getAddress().getPort();
+	}
+
+	@After
+	public void stopServer() {
+		_server.stop( 0 );
+	}
+
+	private static String document() {
+		StringBuilder b = new StringBuilder();
+
+		for( int i = 0; i < 1000; i++ ) {
+			b.append( DOCUMENT );
+		}
+
+		return b.toString();
+	}
+
+	private static void respond( HttpExchange exchange, int status, byte[] body, boolean gzip ) throws IOException {
+
+		if( gzip ) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			GZIPOutputStream out = new GZIPOutputStream( compressed );
+			out.write( body );
+			out.close();
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().set( "Content-Encoding", "gzip" );
+		}
+
+		exchange.sendResponseHeaders( status, body.length );
+		OutputStream out = exchange.getResponseBody();
+		out.write( body );
+		out.close();
+	}
+
+	@Test
+	public void readBytes() throws IOException {
+		USHTTPClient client = new USHTTPClient( 1000, 1000 );
+		byte[] expected = document().getBytes( "UTF-8" );
+
+		assertArrayEquals( expected, client.readBytes( _baseURL + "/plain" ) );
+		assertArrayEquals( expected, client.readBytes( _baseURL + "/gzip" ) );
+		assertArrayEquals( expected, client.readBytes( _baseURL + "/chunked" ) );
+		assertEquals( document(), client.readString( _baseURL + "/plain", Charset.forName( "UTF-8" ) ) );
+	}
+
+	@Test
+	public void connectionsAreReused() throws IOException {
+		USHTTPClient client = new USHTTPClient( 1000, 1000 );
+
+		for( int i = 0; i < 5; i++ ) {
+			client.readBytes( _baseURL + "/plain" );
+		}
+
+		assertEquals( 1, _clientPorts.size() );
+	}
+
+	@Test
+	public void failures() {
+		USHTTPClient client = new USHTTPClient( 1000, 200 );
+
+		try {
+			client.readBytes( _baseURL + "/missing" );
+			fail( "Expected an IOException" );
+		}
+		catch( IOException e ) {}
+
+		try {
+			client.readBytes( _baseURL + "/slow" );
+			fail( "Expected a timeout" );
+		}
+		catch( IOException e ) {}
+
+		USHTTPClient.HostStatistics statistics = client.statisticsForHost( "127.0.0.1" );
+		assertEquals( 2, statistics.requests() );
+		assertEquals( 2, statistics.failures() );
+	}
+
+	@Test
+	public void statistics() throws IOException {
+		USHTTPClient client = new USHTTPClient( 1000, 1000 );
+		assertNull( client.statisticsForHost( "127.0.0.1" ) );
+
+		client.readBytes( _baseURL + "/plain" );
+		client.readBytes( _baseURL + "/gzip" );
+
+		USHTTPClient.HostStatistics statistics = client.statisticsForHost( "127.0.0.1" );
+		assertEquals( 2, statistics.requests() );
+		assertEquals( 0, statistics.failures() );
+		assertTrue( statistics.maximumLatencyMillis() >= statistics.averageLatencyMillis() );
+		assertEquals( Collections.singleton( "127.0.0.1" ), client.statistics().keySet() );
+
+		client.resetStatistics();
+		assertTrue( client.statistics().isEmpty() );
+	}
+
+	@Test
+	public void trackedHostsAreLimited() throws IOException {
+		USHTTPClient client = new USHTTPClient( 1000, 1000, 1 );
+		client.readBytes( _baseURL + "/plain" );
+
+		try {
+			client.readBytes( _baseURL.replace( "127.0.0.1", "localhost" ) + "/plain" );
+		}
+		catch( IOException e ) {
+			// localhost may resolve to an address the server isn't listening on, the request is still made.
+		}
+
+		assertEquals( Collections.singleton( "127.0.0.1" ), client.statistics().keySet() );
+		assertNull( client.statisticsForHost( "localhost" ) );
+		assertNull( client.statisticsForHost( null ) );
+		assertEquals( 1, client.statisticsForHost( "127.0.0.1" ).requests() );
+
+		client = new USHTTPClient( 1000, 1000, 0 );
+		client.readBytes( _baseURL + "/plain" );
+		assertTrue( client.statistics().isEmpty() );
+	}
+
+	@Test
+	public void utilitiesUseSharedClient() throws IOException {
+		assertArrayEquals( document().getBytes( "UTF-8" ), USDataUtilities.readBytesFromURL( _baseURL + "/gzip" ) );
+		assertEquals( document(), USStringUtilities.readStringFromURLUsingEncoding( _baseURL + "/plain", "UTF-8" ) );
+		assertNull( USStringUtilities.readStringFromURLUsingEncoding( _baseURL + "/missing", "UTF-8" ) );
+		assertNull( USDataUtilities.readBytesFromURL( _baseURL + "/missing" ) );
+	}
+}
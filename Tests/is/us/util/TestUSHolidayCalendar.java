@@ -0,0 +1,243 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USHolidayCalendar and USHolidayRule.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSHolidayCalendar {
+
+	private static final int FIRST_EASTER_YEAR = 1583;
+
+	/**
+	 * Easter Sunday for each year from 1583 to 2499, as month * 100 + day.
+	 */
+	private static final int[] EASTER_SUNDAYS = {
+		410, 401, 421, 406, 329, 417, 402, 422, 414, 329, 418, 410, 326, 414, 406, 322, 411, 402, 422, 407,
+		330, 418, 410, 326, 415, 406, 419, 411, 403, 422, 407, 330, 419, 403, 326, 415, 331, 419, 411, 327,
+		416, 407, 330, 412, 404, 423, 415, 331, 420, 411, 327, 416, 408, 323, 412, 404, 424, 408, 331, 420,
+		405, 327, 416, 401, 421, 412, 404, 417, 409, 331, 413, 405, 328, 416, 401, 421, 413, 328, 417, 409,
+		325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 402, 325, 414, 405, 418, 410, 402, 421, 406, 329,
+		418, 402, 422, 414, 330, 418, 410, 326, 415, 406, 322, 411, 403, 422, 407, 330, 419, 411, 327, 416,
+		408, 323, 412, 404, 424, 408, 331, 420, 405, 327, 416, 401, 421, 412, 328, 417, 409, 331, 413, 405,
+		328, 416, 401, 421, 413, 328, 417, 409, 325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 402, 325,
+		414, 405, 418, 410, 402, 414, 406, 329, 411, 402, 422, 414, 330, 418, 410, 326, 415, 406, 322, 411,
+		403, 422, 407, 330, 419, 403, 326, 415, 331, 419, 411, 403, 416, 407, 330, 419, 404, 326, 415, 331,
+		420, 411, 327, 416, 408, 323, 412, 404, 424, 408, 331, 420, 405, 327, 416, 408, 324, 413, 405, 418,
+		410, 401, 414, 406, 329, 417, 402, 422, 414, 329, 418, 410, 326, 414, 406, 322, 411, 402, 422, 407,
+		330, 418, 403, 326, 415, 406, 419, 411, 403, 422, 407, 330, 419, 403, 326, 415, 331, 419, 411, 327,
+		416, 407, 323, 412, 404, 423, 408, 331, 420, 411, 327, 416, 408, 323, 412, 404, 424, 408, 331, 420,
+		405, 327, 416, 401, 421, 412, 328, 417, 409, 331, 413, 405, 328, 416, 401, 421, 413, 328, 417, 409,
+		325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 402, 325, 414, 405, 418, 410, 402, 415, 407, 330,
+		412, 403, 423, 415, 331, 419, 411, 327, 416, 407, 323, 412, 404, 423, 408, 331, 420, 404, 327, 416,
+		401, 420, 412, 404, 417, 408, 331, 420, 405, 327, 416, 401, 421, 412, 328, 417, 409, 324, 413, 405,
+		425, 409, 401, 421, 406, 328, 417, 409, 325, 413, 405, 418, 410, 401, 421, 406, 329, 417, 402, 422,
+		414, 329, 418, 410, 326, 414, 406, 329, 411, 402, 422, 414, 330, 418, 410, 326, 415, 406, 419, 411,
+		403, 422, 407, 330, 419, 403, 326, 415, 331, 419, 411, 403, 416, 407, 330, 412, 404, 423, 415, 331,
+		420, 411, 327, 416, 408, 323, 412, 404, 424, 408, 331, 420, 405, 327, 416, 401, 421, 412, 404, 417,
+		409, 331, 420, 405, 328, 416, 401, 421, 413, 328, 417, 409, 325, 413, 405, 425, 410, 401, 421, 406,
+		329, 417, 409, 325, 414, 405, 418, 410, 402, 421, 406, 329, 418, 402, 422, 414, 330, 418, 410, 326,
+		415, 406, 329, 411, 403, 422, 414, 330, 419, 410, 326, 415, 407, 419, 411, 403, 423, 407, 330, 419,
+		404, 326, 415, 331, 420, 411, 403, 416, 408, 330, 412, 404, 424, 415, 331, 420, 412, 328, 417, 409,
+		325, 413, 405, 418, 410, 401, 421, 406, 329, 417, 402, 422, 414, 329, 418, 410, 326, 414, 406, 329,
+		411, 402, 422, 414, 330, 418, 410, 326, 415, 406, 419, 411, 403, 422, 407, 330, 419, 403, 326, 415,
+		331, 419, 411, 403, 416, 407, 330, 412, 404, 423, 415, 331, 420, 411, 327, 416, 408, 323, 412, 404,
+		424, 408, 331, 420, 405, 327, 416, 401, 421, 412, 404, 417, 409, 331, 420, 405, 328, 416, 401, 421,
+		413, 328, 417, 409, 325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 409, 325, 414, 406, 419, 411,
+		403, 422, 407, 330, 419, 403, 326, 415, 331, 419, 411, 327, 416, 407, 330, 412, 404, 423, 415, 331,
+		420, 411, 327, 416, 408, 323, 412, 404, 424, 408, 331, 420, 405, 327, 416, 401, 421, 412, 404, 417,
+		409, 331, 413, 405, 328, 416, 401, 421, 413, 328, 417, 409, 325, 413, 405, 425, 410, 401, 421, 406,
+		329, 417, 402, 325, 414, 405, 418, 410, 402, 421, 406, 329, 418, 402, 422, 414, 330, 418, 410, 326,
+		415, 406, 322, 411, 403, 422, 407, 330, 419, 410, 326, 415, 407, 419, 411, 403, 416, 408, 331, 420,
+		405, 327, 416, 401, 421, 412, 328, 417, 409, 331, 413, 405, 328, 416, 401, 421, 406, 328, 417, 409,
+		325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 402, 325, 414, 405, 418, 410, 326, 414, 406, 329,
+		411, 402, 422, 414, 330, 418, 410, 326, 415, 406, 322, 411, 403, 422, 407, 330, 419, 403, 326, 415,
+		331, 419, 411, 403, 416, 407, 330, 419, 404, 326, 415, 331, 420, 411, 327, 416, 408, 323, 412, 404,
+		424, 408, 331, 420, 405, 327, 416, 408, 324, 412, 404, 417, 409, 331, 420, 405, 328, 416, 401, 421,
+		413, 328, 417, 409, 325, 413, 405, 425, 410, 401, 421, 406, 329, 417, 402, 325, 414, 405, 418, 410,
+		402, 421, 406, 329, 418, 402, 422, 414, 330, 418, 410, 326, 415, 406, 322, 411, 403, 422, 407, 330,
+		419, 410, 326, 415, 407, 419, 411, 403, 416, 407, 330, 419, 404, 326, 415, 331, 420, 411, 327, 416,
+		408, 330, 412, 404, 424, 415, 331, 420, 405, 327, 416, 408, 324, 412, 404, 424, 409, 331, 420, 405,
+		328, 416, 401, 421, 413, 404, 417, 409, 325, 413, 405, 328, 410, 401, 421, 413, 329
+	};
+
+	@Test
+	public void rules() {
+		assertEquals( USDateUtilities.epochDay( 2009, 4, 12 ), USHolidayRule.easterSunday( 2009 ) );
+		assertEquals( USDateUtilities.epochDay( 2013, 3, 31 ), USHolidayRule.easterSunday( 2013 ) );
+
+		assertEquals( USDateUtilities.epochDay( 2009, 12, 25 ), USHolidayRule.fixed( "Jóladagur", 12, 25 ).epochDay( 2009 ) );
+		assertEquals( USDateUtilities.epochDay( 2009, 4, 10 ), USHolidayRule.easter( "Föstudagurinn langi", -2 ).epochDay( 2009 ) );
+
+		// April 19th 2012 was a Thursday, April 19th 2009 a Sunday.
+		USHolidayRule firstDayOfSummer = USHolidayRule.weekdayOnOrAfter( "Sumardagurinn fyrsti", 4, 19, GregorianCalendar.THURSDAY );
+		assertEquals( USDateUtilities.epochDay( 2012, 4, 19 ), firstDayOfSummer.epochDay( 2012 ) );
+		assertEquals( USDateUtilities.epochDay( 2009, 4, 23 ), firstDayOfSummer.epochDay( 2009 ) );
+
+		USHolidayRule limited = USHolidayRule.fixed( "Lýðveldishátíð", 6, 17 ).years( 1944, 1944 );
+		assertEquals( USHolidayRule.NO_DAY, limited.epochDay( 1943 ) );
+		assertEquals( USDateUtilities.epochDay( 1944, 6, 17 ), limited.epochDay( 1944 ) );
+		assertEquals( USHolidayRule.NO_DAY, limited.epochDay( 1945 ) );
+
+		assertFalse( limited.isPartial() );
+		assertTrue( limited.partial().isPartial() );
+		assertEquals( "Lýðveldishátíð", limited.partial().name() );
+
+		try {
+			USHolidayRule.fixed( "Ekkert", 13, 1 );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+
+		try {
+			USHolidayRule.fixed( "Ekkert", 4, 31 );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+	}
+
+	@Test
+	public void leapDay() {
+		USHolidayRule leapDay = USHolidayRule.fixed( "Hlaupársdagur", 2, 29 );
+		assertEquals( USDateUtilities.epochDay( 2008, 2, 29 ), leapDay.epochDay( 2008 ) );
+		assertEquals( USHolidayRule.NO_DAY, leapDay.epochDay( 2009 ) );
+		assertEquals( USHolidayRule.NO_DAY, leapDay.epochDay( 1900 ) );
+		assertEquals( USDateUtilities.epochDay( 2000, 2, 29 ), leapDay.epochDay( 2000 ) );
+
+		USHolidayCalendar calendar = new USHolidayCalendar( "is-test-leap-day", Arrays.asList( leapDay ) );
+		assertTrue( calendar.isHoliday( USDateUtilities.epochDay( 2008, 2, 29 ) ) );
+		assertFalse( calendar.isHoliday( USDateUtilities.epochDay( 2009, 3, 1 ) ) );
+	}
+
+	@Test
+	public void ruleDayInNextYear() {
+		// December 29th 2026 is a Tuesday, so the rule gives Monday January 4th 2027 for the year 2026.
+		USHolidayRule rule = USHolidayRule.weekdayOnOrAfter( "Mánudagur eftir jól", 12, 29, GregorianCalendar.MONDAY );
+		int day = USDateUtilities.epochDay( 2027, 1, 4 );
+		assertEquals( day, rule.epochDay( 2026 ) );
+
+		USHolidayCalendar calendar = new USHolidayCalendar( "is-test-next-year", Arrays.asList( rule ) );
+		assertTrue( calendar.isFullHoliday( day ) );
+		assertFalse( calendar.isWorkday( day ) );
+		assertEquals( day + 1, calendar.addWorkdays( day - 1, 1 ) );
+	}
+
+	@Test
+	public void easterSundayOnKnownDates() {
+		for( int i = 0; i < EASTER_SUNDAYS.length; i++ ) {
+			int year = FIRST_EASTER_YEAR + i;
+			assertEquals( USDateUtilities.epochDay( year, EASTER_SUNDAYS[i] / 100, EASTER_SUNDAYS[i] % 100 ), USHolidayRule.easterSunday( year ) );
+		}
+	}
+
+	@Test
+	public void icelandicCalendarOnKnownDates() {
+		assertSame( USHolidayCalendar.ICELANDIC, USHolidayCalendar.calendarNamed( "is" ) );
+
+		for( int i = 0; i < EASTER_SUNDAYS.length; i++ ) {
+			int year = FIRST_EASTER_YEAR + i;
+			int easter = USDateUtilities.epochDay( year, EASTER_SUNDAYS[i] / 100, EASTER_SUNDAYS[i] % 100 );
+			Set<Integer> full = new HashSet<Integer>();
+			Set<Integer> partial = new HashSet<Integer>();
+
+			full.add( USDateUtilities.epochDay( year, 1, 1 ) );
+			full.add( easter - 3 );
+			full.add( easter - 2 );
+			full.add( easter );
+			full.add( easter + 1 );
+			full.add( firstWeekdayOnOrAfter( year, 4, 19, Calendar.THURSDAY ) );
+			full.add( USDateUtilities.epochDay( year, 5, 1 ) );
+			full.add( easter + 39 );
+			full.add( easter + 50 );
+			full.add( USDateUtilities.epochDay( year, 6, 17 ) );
+			full.add( firstWeekdayOnOrAfter( year, 8, 1, Calendar.MONDAY ) );
+			full.add( USDateUtilities.epochDay( year, 12, 25 ) );
+			full.add( USDateUtilities.epochDay( year, 12, 26 ) );
+			partial.add( USDateUtilities.epochDay( year, 12, 24 ) );
+			partial.add( USDateUtilities.epochDay( year, 12, 31 ) );
+
+			for( int epochDay = USDateUtilities.epochDay( year, 1, 1 ); epochDay < USDateUtilities.epochDay( year + 1, 1, 1 ); epochDay++ ) {
+				assertEquals( full.contains( epochDay ), USHolidayCalendar.ICELANDIC.isFullHoliday( epochDay ) );
+				assertEquals( partial.contains( epochDay ), USHolidayCalendar.ICELANDIC.isPartialHoliday( epochDay ) );
+			}
+		}
+	}
+
+	@Test
+	public void builtInCalendarCannotBeReplaced() {
+		USHolidayCalendar impostor = new USHolidayCalendar( "is", Collections.<USHolidayRule> emptyList() );
+
+		try {
+			USHolidayCalendar.register( impostor );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+
+		try {
+			USHolidayCalendar.unregister( "is" );
+			fail();
+		}
+		catch( IllegalArgumentException e ) {}
+
+		USHolidayCalendar.register( USHolidayCalendar.ICELANDIC );
+		assertSame( USHolidayCalendar.ICELANDIC, USHolidayCalendar.calendarNamed( "is" ) );
+	}
+
+	@Test
+	public void calendarsSideBySide() {
+		USHolidayRule cultureNight = USHolidayRule.fixed( "Menningarnótt", 8, 24 );
+		USHolidayCalendar reykjavik = USHolidayCalendar.ICELANDIC.withRules( "is-test-reykjavik", cultureNight, USHolidayRule.easter( "Hvítasunnudagur", 49 ).partial() );
+		USHolidayCalendar.register( reykjavik );
+
+		try {
+			assertSame( reykjavik, USHolidayCalendar.calendarNamed( "is-test-reykjavik" ) );
+			assertTrue( USHolidayCalendar.calendarNames().contains( "is-test-reykjavik" ) );
+		}
+		finally {
+			USHolidayCalendar.unregister( "is-test-reykjavik" );
+		}
+
+		assertNull( USHolidayCalendar.calendarNamed( "is-test-reykjavik" ) );
+		assertTrue( USHolidayCalendar.calendarNames().contains( "is" ) );
+		assertNull( USHolidayCalendar.calendarNamed( "no-such-calendar" ) );
+		assertEquals( USHolidayCalendar.ICELANDIC.rules().size() + 2, reykjavik.rules().size() );
+
+		// August 24th 2009 was a Monday.
+		int cultureDay = USDateUtilities.epochDay( 2009, 8, 24 );
+		assertTrue( reykjavik.isFullHoliday( cultureDay ) );
+		assertFalse( reykjavik.isWorkday( cultureDay ) );
+		assertFalse( USHolidayCalendar.ICELANDIC.isHoliday( cultureDay ) );
+		assertTrue( USHolidayCalendar.ICELANDIC.isWorkday( cultureDay ) );
+		assertTrue( reykjavik.isPartialHoliday( USHolidayRule.easterSunday( 2009 ) + 49 ) );
+
+		int start = USDateUtilities.epochDay( 2009, 8, 1 );
+		int end = USDateUtilities.epochDay( 2009, 9, 1 );
+		assertEquals( USHolidayCalendar.ICELANDIC.workdaysBetween( start, end ) - 1, reykjavik.workdaysBetween( start, end ) );
+		assertEquals( cultureDay + 1, reykjavik.addWorkdays( cultureDay - 3, 1 ) );
+		assertEquals( cultureDay, USHolidayCalendar.ICELANDIC.addWorkdays( cultureDay - 3, 1 ) );
+
+		USDateColumn column = new USDateColumn( new int[] { cultureDay, cultureDay + 1 } );
+		assertTrue( Arrays.equals( new boolean[] { false, true }, column.workdayMask( reykjavik ) ) );
+		assertTrue( Arrays.equals( new boolean[] { true, true }, column.workdayMask() ) );
+	}
+
+	/**
+	 * @return The epoch day of the first given weekday on or after the given day, found using GregorianCalendar.
+	 */
+	private static int firstWeekdayOnOrAfter( int year, int month, int day, int weekday ) {
+		GregorianCalendar calendar = new GregorianCalendar( year, month - 1, day );
+
+		while( calendar.get( Calendar.DAY_OF_WEEK ) != weekday ) {
+			calendar.add( Calendar.DAY_OF_MONTH, 1 );
+		}
+
+		return USDateUtilities.epochDay( year, calendar.get( Calendar.MONTH ) + 1, calendar.get( Calendar.DAY_OF_MONTH ) );
+	}
+}
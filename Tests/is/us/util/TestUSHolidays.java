@@ -3,7 +3,7 @@ package is.us.util;
 import static org.junit.Assert.*;
 
 import java.text.*;
-import java.util.Date;
+import java.util.*;
 
 import org.junit.Test;
 
@@ -351,4 +351,55 @@ public class TestUSHolidays {
 			fail();
 		}
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void holidaysOnKnownDates() {
+		// Years on both sides of the edges of the years cached by USHolidayCalendar.
+		assertHolidays( 1899, "0101", "0330", "0331", "0402", "0403", "0420", "0501", "0511", "0522", "0617", "0807", "1225", "1226" );
+		assertHolidays( 2009, "0101", "0409", "0410", "0412", "0413", "0423", "0501", "0521", "0601", "0617", "0803", "1225", "1226" );
+		assertHolidays( 2010, "0101", "0401", "0402", "0404", "0405", "0422", "0501", "0513", "0524", "0617", "0802", "1225", "1226" );
+		assertHolidays( 2200, "0101", "0403", "0404", "0406", "0407", "0424", "0501", "0515", "0526", "0617", "0804", "1225", "1226" );
+	}
+
+	/**
+	 * Checks every day of the given year against the given full holidays (as MMdd), with Christmas Eve and New Year's Eve as the partial holidays.
+	 */
+	private static void assertHolidays( int year, String... fullHolidays ) {
+		Set<Date> full = new HashSet<Date>();
+		Set<Date> partial = new HashSet<Date>();
+
+		for( String monthAndDay : fullHolidays ) {
+			full.add( USDateUtilities.date( year, Integer.parseInt( monthAndDay.substring( 0, 2 ) ), Integer.parseInt( monthAndDay.substring( 2 ) ) ) );
+		}
+
+		partial.add( USDateUtilities.date( year, 12, 24 ) );
+		partial.add( USDateUtilities.date( year, 12, 31 ) );
+
+		USHolidays h = new USHolidays( year );
+		assertEquals( full, new HashSet<Date>( h.fullHolidays() ) );
+		assertEquals( partial, new HashSet<Date>( h.partialHolidays() ) );
+
+		for( int day = 1; USDateUtilities.year( USDateUtilities.date( year, 1, day ) ) == year; day++ ) {
+			Date date = USDateUtilities.date( year, 1, day );
+			assertEquals( full.contains( date ), USHolidays.isFullHoliday( date ) );
+			assertEquals( partial.contains( date ), USHolidays.isPartialHoliday( date ) );
+			assertEquals( full.contains( date ) || partial.contains( date ), USHolidays.isHoliday( date ) );
+		}
+	}
+
+	@Test
+	public void epochDayLookups() {
+		assertTrue( USHolidays.isFullHoliday( USDateUtilities.epochDay( 2009, 6, 17 ) ) );
+		assertFalse( USHolidays.isPartialHoliday( USDateUtilities.epochDay( 2009, 6, 17 ) ) );
+		assertTrue( USHolidays.isPartialHoliday( USDateUtilities.epochDay( 2009, 12, 31 ) ) );
+		assertTrue( USHolidays.isHoliday( USDateUtilities.epochDay( 2009, 12, 24 ) ) );
+		assertFalse( USHolidays.isHoliday( USDateUtilities.epochDay( 2009, 12, 23 ) ) );
+		assertTrue( USHolidays.isFullHoliday( USDateUtilities.epochDay( 2400, 1, 1 ) ) );
+	}
+
+	@Test
+	public void timeOfDayIsIgnored() throws ParseException {
+		assertTrue( USHolidays.isFullHoliday( df.parse( "20091225 2359599" ) ) );
+		assertFalse( USHolidays.isFullHoliday( df.parse( "20091227 0000000" ) ) );
+	}
+}
@@ -0,0 +1,64 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USLinkifier.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSLinkifier {
+
+	private static final String URL_REGEX = "(((ht|f)(tp)(s?)://)([a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*(.))?[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]*((\\.)[a-zA-Z0-9áÁðÐéÉíÍóÓuÚýÝþÞæÆöÖ]{2,5})(/[\\w|\\d|\\.|%|&|;|=|\\?]*)*)(\\S)";
+
+	private static final String[] SAMPLES = { "", "a", "a http://www.us.is/vedur b", "http://a.is/x?y=1&z=2;", "ftp://files.us.is/", "https://www.gylfiþórnýsisson.is/ smu", "@hugi og @us_is", "póstur á hugi@us.is", "https://x.is/@a @b" };
+
+	@Test
+	public void matchesRegexReplacement() {
+		for( String sample : SAMPLES ) {
+			assertEquals( sample.replaceAll( URL_REGEX, "<a href=\"$0\">$0</a>" ), USLinkifier.HYPERLINKS.linkify( sample ) );
+			assertEquals( sample.replaceAll( "@(\\w+)", "<a href=\"http://www.twitter.com/$1\">@$1</a>" ), USLinkifier.TWITTER_USERS.linkify( sample ) );
+		}
+	}
+
+	@Test
+	public void htmlifier() {
+		assertEquals( "a<br />\n<a href=\"http://www.us.is/vedur\">http://www.us.is/vedur</a><br />\nb", USLinkifier.HTMLIFIER.linkify( "a\nhttp://www.us.is/vedur\nb" ) );
+		assertEquals( "@hugi<br />\n", USLinkifier.HTMLIFIER.linkify( "@hugi\n" ) );
+	}
+
+	@Test
+	public void allConversions() {
+		USLinkifier linkifier = new USLinkifier( true, true, true );
+		assertEquals( "<a href=\"http://www.twitter.com/hugi\">@hugi</a>:<br />\n<a href=\"http://hugi@us.is/\">http://hugi@us.is/</a>", linkifier.linkify( "@hugi:\nhttp://hugi@us.is/" ) );
+	}
+
+	@Test
+	public void unchangedStringIsReturned() {
+		String s = "ekkert að sjá hér";
+		assertSame( s, USLinkifier.HTMLIFIER.linkify( s ) );
+		assertSame( s, new USLinkifier( false, false, false ).linkify( s ) );
+		assertNull( USLinkifier.HTMLIFIER.linkify( (String)null ) );
+	}
+
+	@Test
+	public void linkifyReader() throws IOException {
+		StringBuilder text = new StringBuilder();
+
+		for( int i = 0; i < 2000; i++ ) {
+			text.append( "lína " ).append( i ).append( " http://www.us.is/" ).append( i ).append( " @us\n" );
+		}
+
+		text.append( "síðasta lína án línubils http://us.is" );
+
+		USLinkifier linkifier = new USLinkifier( true, true, true );
+		StringWriter out = new StringWriter();
+		linkifier.linkify( new StringReader( text.toString() ), out );
+		assertEquals( linkifier.linkify( text.toString() ), out.toString() );
+	}
+}
@@ -0,0 +1,76 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USSimilarRegnoIndex.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSSimilarRegnoIndex {
+
+	@Test
+	public void similarTo() {
+		USSimilarRegnoIndex index = new USSimilarRegnoIndex( Arrays.asList( "AB 123", "ÁB-123", "AB 12E", "YO 010", "ÝÓ 0I0", "xy-987" ) );
+
+		assertEquals( 6, index.size() );
+		assertEquals( 4, index.numberOfGroups() );
+		assertEquals( Arrays.asList( "AB123", "ÁB123" ), index.similarTo( "ab 123" ) );
+		assertEquals( Arrays.asList( "YO010", "ÝÓ0I0" ), index.similarTo( "Y0 O1O" ) );
+		assertEquals( Arrays.asList( "XY987" ), index.similarTo( "XY 987" ) );
+		assertTrue( index.similarTo( "ZZ 000" ).isEmpty() );
+		assertTrue( index.similarTo( null ).isEmpty() );
+	}
+
+	@Test
+	public void addAndRemove() {
+		USSimilarRegnoIndex index = new USSimilarRegnoIndex();
+
+		assertTrue( index.add( "AB 123" ) );
+		assertFalse( index.add( "AB-123" ) );
+		assertTrue( index.add( "ÁB 123" ) );
+		assertTrue( index.add( "AB 1Z3" ) );
+		assertTrue( index.add( "ÁB 12E" ) );
+		assertFalse( index.add( "" ) );
+		assertFalse( index.add( null ) );
+		assertEquals( 4, index.size() );
+
+		assertTrue( index.contains( "ab123" ) );
+		assertFalse( index.contains( "AB 12E" ) );
+
+		assertFalse( index.remove( "AB 12E" ) );
+		assertTrue( index.remove( "AB 123" ) );
+		assertFalse( index.remove( "AB 123" ) );
+		assertEquals( Arrays.asList( "ÁB123" ), index.similarTo( "AB 123" ) );
+		assertTrue( index.remove( "ÁB 123" ) );
+		assertTrue( index.similarTo( "AB 123" ).isEmpty() );
+		assertEquals( 2, index.size() );
+		assertEquals( 2, index.numberOfGroups() );
+
+		index.clear();
+		assertEquals( 0, index.size() );
+	}
+
+	@Test
+	public void matchesAreSimilar() {
+		String[] regnos = { "OI 100", "0I 1O0", "ÓÍ 10Ó", "OI 1OO", "AE 100", "ÁÉ 100", "UY 001", "ÚÝ 00I" };
+		USSimilarRegnoIndex index = new USSimilarRegnoIndex( Arrays.asList( regnos ) );
+
+		for( String regno : regnos ) {
+			Set<String> expected = new HashSet<String>();
+
+			for( String other : regnos ) {
+				if( USStringUtilities.areSimilar( regno, other ) ) {
+					expected.add( USStringUtilities.cleanupRegno( other ) );
+				}
+			}
+
+			assertEquals( expected, new HashSet<String>( index.similarTo( regno ) ) );
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USStringFormatter.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSStringFormatter {
+
+	@Test
+	public void format() {
+		USStringFormatter formatter = USStringFormatter.compile( "Hæ {}, segirðu ekki allt {}?" );
+		assertEquals( 2, formatter.numberOfPlaceholders() );
+		assertEquals( "Hæ Hugi, segirðu ekki allt gott?", formatter.format( "Hugi", "gott" ) );
+		assertEquals( "Hæ Hugi, segirðu ekki allt {}?", formatter.format( "Hugi" ) );
+		assertEquals( "Hæ Hugi, segirðu ekki allt gott?", formatter.format( "Hugi", "gott", "ignored" ) );
+		assertEquals( "Hæ null, segirðu ekki allt {}?", formatter.format( (Object)null ) );
+		assertEquals( "Hæ {}, segirðu ekki allt {}?", formatter.format( (Object[])null ) );
+	}
+
+	@Test
+	public void argumentsAreLiteral() {
+		USStringFormatter formatter = USStringFormatter.compile( "{}-{}" );
+		assertEquals( "{}-x", formatter.format( "{}", "x" ) );
+		assertEquals( "$1-\\", formatter.format( "$1", "\\" ) );
+	}
+
+	@Test
+	public void patternWithoutPlaceholders() {
+		String pattern = "no placeholders";
+		assertSame( pattern, USStringFormatter.compile( pattern ).format( "a" ) );
+		assertEquals( "", USStringFormatter.compile( "" ).format( "a" ) );
+	}
+
+	@Test
+	public void formatterForPattern() {
+		assertSame( USStringFormatter.formatterForPattern( "{} - {}" ), USStringFormatter.formatterForPattern( "{} - {}" ) );
+	}
+
+	@Test
+	public void frequentlyUsedFormattersStayCached() {
+		USStringFormatter frequent = USStringFormatter.formatterForPattern( "{} * {}" );
+
+		for( int i = 0; i < 5000; i++ ) {
+			USStringFormatter.formatterForPattern( "{} einnota " + i );
+			assertSame( frequent, USStringFormatter.formatterForPattern( "{} * {}" ) );
+		}
+	}
+
+	@Test
+	public void appendFormatted() {
+		StringBuilder b = new StringBuilder( "> " );
+		USStringFormatter.compile( "{} + {} = {}" ).appendFormatted( b, 1, 2, 3 );
+		assertEquals( "> 1 + 2 = 3", b.toString() );
+	}
+
+	@Test
+	public void nestedFormatting() {
+		final USStringFormatter inner = USStringFormatter.compile( "[{}]" );
+		Object argument = new Object() {
+			@Override
+			public String toString() {
+				return inner.format( "inner" );
+			}
+		};
+
+		assertEquals( "a [inner] b", USStringFormatter.compile( "a {} {}" ).format( argument, "b" ) );
+	}
+}
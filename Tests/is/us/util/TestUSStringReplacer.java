@@ -0,0 +1,86 @@
+package is.us.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for USStringReplacer.
+ * 
+ * @author Hugi Thordarson
+ */
+
+public class TestUSStringReplacer {
+
+	@Test
+	public void replace() {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put( "lazy", "excited" );
+		map.put( "cat", "dog" );
+		map.put( "dog", "cat" );
+		USStringReplacer replacer = new USStringReplacer( map );
+
+		assertEquals( "the excited dog crawled under the hyper cat", replacer.replace( "the lazy cat crawled under the hyper dog" ) );
+		assertEquals( "dogcatdog", replacer.replace( "catdogcat" ) );
+		assertEquals( "", replacer.replace( "" ) );
+		assertNull( replacer.replace( null ) );
+	}
+
+	@Test
+	public void unchangedStringIsReturned() {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put( "xyz", "abc" );
+		String s = "nothing to replace here";
+		assertSame( s, new USStringReplacer( map ).replace( s ) );
+		assertSame( s, new USStringReplacer( null ).replace( s ) );
+	}
+
+	@Test
+	public void leftmostLongest() {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put( "a", "1" );
+		map.put( "ab", "2" );
+		map.put( "abc", "3" );
+		map.put( "bcd", "4" );
+		map.put( "cd", "5" );
+		USStringReplacer replacer = new USStringReplacer( map );
+
+		assertEquals( "3", replacer.replace( "abc" ) );
+		assertEquals( "3d", replacer.replace( "abcd" ) );
+		assertEquals( "x4", replacer.replace( "xbcd" ) );
+		assertEquals( "2x", replacer.replace( "abx" ) );
+		assertEquals( "11", replacer.replace( "aa" ) );
+	}
+
+	@Test
+	public void matchesAfterPendingMatch() {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put( "abcde", "1" );
+		map.put( "ab", "2" );
+		map.put( "cd", "3" );
+		USStringReplacer replacer = new USStringReplacer( map );
+
+		assertEquals( "23", replacer.replace( "abcd" ) );
+		assertEquals( "1", replacer.replace( "abcde" ) );
+		assertEquals( "23f", replacer.replace( "abcdf" ) );
+	}
+
+	@Test
+	public void ignoresEmptyKeysAndNullValues() {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put( "", "Y" );
+		map.put( null, "Z" );
+		map.put( "hyper ", null );
+		assertEquals( "the dog", new USStringReplacer( map ).replace( "the hyper dog" ) );
+	}
+
+	@Test
+	public void replacementsAreNotRescanned() {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		map.put( "a", "b" );
+		map.put( "b", "c" );
+		assertEquals( "bc", new USStringReplacer( map ).replace( "ab" ) );
+	}
+}
@@ -2,10 +2,13 @@ package is.us.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.text.*;
 import java.util.*;
 
 import org.junit.Test;
@@ -62,11 +65,34 @@ public class TestUSStringUtilities {
 	@Test
 	public void validatePermno() {
 		assertFalse( USStringUtilities.validatePermno( " " ) );
+		assertFalse( USStringUtilities.validatePermno( null ) );
+		assertTrue( USStringUtilities.validatePermno( "ox279" ) );
+		assertTrue( USStringUtilities.validatePermno( "ÞÆ-Ö12" ) );
+		assertTrue( USStringUtilities.validatePermno( "  ab c 12 " ) );
+		assertFalse( USStringUtilities.validatePermno( "OX2791" ) );
+		assertFalse( USStringUtilities.validatePermno( "OX27" ) );
+		assertFalse( USStringUtilities.validatePermno( "O1279" ) );
+		assertFalse( USStringUtilities.validatePermno( "OX2A9" ) );
+		assertFalse( USStringUtilities.validatePermno( "OX#79" ) );
+		assertFalse( USStringUtilities.validatePermno( "ØX279" ) );
 		assertTrue( USStringUtilities.stringHasValueTrimmed( "ox279" ) );
 		assertFalse( USStringUtilities.stringHasValueTrimmed( null ) );
 		assertTrue( USStringUtilities.stringHasValueTrimmed( "sos11" ) );
 	}
 
+	@Test
+	public void validatePermnos() {
+		String[] permnos = { "OX279", "OX#79", null, "ab-123", "AB12C" };
+		boolean[] valid = USStringUtilities.validatePermnos( permnos );
+		assertEquals( 5, valid.length );
+		assertTrue( valid[0] );
+		assertFalse( valid[1] );
+		assertFalse( valid[2] );
+		assertTrue( valid[3] );
+		assertFalse( valid[4] );
+		assertEquals( Arrays.asList( "OX#79", null, "AB12C" ), USStringUtilities.invalidPermnos( Arrays.asList( permnos ) ) );
+	}
+
 	@Test
 	public void stringFromDataUsingEncoding() {
 		assertEquals( "asdf", USStringUtilities.stringFromDataUsingEncoding( "asdf".getBytes(), "UTF-8" ) );
@@ -104,6 +130,27 @@ public class TestUSStringUtilities {
 		assertTrue( USStringUtilities.areSimilar( '0', 'Ó' ) );
 		assertTrue( USStringUtilities.areSimilar( 'Y', 'Ý' ) );
 		assertTrue( USStringUtilities.areSimilar( 'Ý', 'Y' ) );
+		assertFalse( USStringUtilities.areSimilar( 'A', 'E' ) );
+		assertFalse( USStringUtilities.areSimilar( 'a', 'Á' ) );
+		assertFalse( USStringUtilities.areSimilar( '1', 'O' ) );
+	}
+
+	@Test
+	public void similarityKey() {
+		assertEquals( "ABIOO", USStringUtilities.similarityKey( "ÁB 1O0" ) );
+		assertEquals( "ABIOO", USStringUtilities.similarityKey( "ab íóo" ) );
+		assertEquals( "", USStringUtilities.similarityKey( "  " ) );
+		assertEquals( null, USStringUtilities.similarityKey( null ) );
+
+		for( String nextString : PAIRS_THAT_ARE_SIMILAR ) {
+			String[] a = nextString.split( ";" );
+			assertEquals( USStringUtilities.similarityKey( a[0] ), USStringUtilities.similarityKey( a[1] ) );
+		}
+
+		for( String nextString : PAIRS_THAT_ARE_NOT_SIMILAR ) {
+			String[] a = nextString.split( ";" );
+			assertFalse( USStringUtilities.similarityKey( a[0] ).equals( USStringUtilities.similarityKey( a[1] ) ) );
+		}
 	}
 
 	@Test
@@ -163,11 +210,83 @@ public class TestUSStringUtilities {
 		}
 	}
 
+	@Test
+	public void readStringFromInputStreamSplitsMultibyteCharacters() throws IOException {
+		final byte[] bytes = "Þórður á Ísafirði – €".getBytes( "UTF-8" );
+
+		// Returns a single byte per read, so every multibyte character is split between reads.
+		InputStream in = new ByteArrayInputStream( bytes ) {
+			@Override
+			public synchronized int read( byte[] b, int off, int len ) {
+				return super.read( b, off, Math.min( len, 1 ) );
+			}
+		};
+
+		assertEquals( "Þórður á Ísafirði – €", USStringUtilities.readStringFromInputStream( in, Charset.forName( "UTF-8" ) ) );
+		assertEquals( "Þórður", USStringUtilities.readStringFromInputStreamUsingEncoding( new ByteArrayInputStream( "Þórður".getBytes( "ISO-8859-1" ) ), "ISO-8859-1" ) );
+		assertEquals( null, USStringUtilities.readStringFromInputStreamUsingEncoding( new ByteArrayInputStream( bytes ), "no-such-encoding" ) );
+	}
+
+	@Test
+	public void readStringFromFile() throws IOException {
+		StringBuilder b = new StringBuilder();
+
+		while( b.length() < 1024 * 1024 ) {
+			b.append( "Hæ, hvað segirðu? " );
+		}
+
+		String[] strings = { "", "Þórður", b.toString() };
+
+		for( String string : strings ) {
+			File file = File.createTempFile( "string", ".txt" );
+
+			try {
+				USStringUtilities.writeStringToFileUsingEncoding( string, file, "UTF-8" );
+				assertEquals( string, USStringUtilities.readStringFromFile( file, Charset.forName( "UTF-8" ) ) );
+				assertEquals( string, USStringUtilities.readStringFromFileUsingEncoding( file, null ) );
+				assertEquals( new String( string.getBytes( "UTF-8" ), "ISO-8859-1" ), USStringUtilities.readStringFromFileUsingEncoding( file, "ISO-8859-1" ) );
+			}
+			finally {
+				file.delete();
+			}
+		}
+
+		assertEquals( null, USStringUtilities.readStringFromFile( new File( "/no/such/file" ), null ) );
+	}
+
 	@Test
 	public void replace() {
 		assertEquals( USStringUtilities.replace( "asdf", "s", "d" ), "addf" );
 		assertEquals( USStringUtilities.replace( "aSdf", "S", "d" ), "addf" );
 		assertEquals( USStringUtilities.replace( "hyper dog", "hyper dog", "lazy cat" ), "lazy cat" );
+		assertEquals( "xxbxxxx", USStringUtilities.replace( "abaa", "a", "xx" ) );
+		assertEquals( "aba", USStringUtilities.replace( "aaaba", "aa", "" ) );
+		assertEquals( "b", USStringUtilities.replace( "aba", "a", null ) );
+
+		String unchanged = "the lazy cat";
+		assertSame( unchanged, USStringUtilities.replace( unchanged, "dog", "cat" ) );
+		assertSame( unchanged, USStringUtilities.replace( unchanged, "", "cat" ) );
+		assertSame( unchanged, USStringUtilities.replace( unchanged, null, "cat" ) );
+	}
+
+	@Test
+	public void replaceToBuilder() {
+		assertEquals( "> the lazy dog", USStringUtilities.replace( new StringBuilder( "the lazy cat" ), "cat", "dog", new StringBuilder( "> " ) ).toString() );
+		assertEquals( "xxbxxxx", USStringUtilities.replace( new StringBuilder( "abaa" ), "a", "xx", new StringBuilder() ).toString() );
+		assertEquals( "abab", USStringUtilities.replace( new StringBuilder( "abab" ), "abc", "x", new StringBuilder() ).toString() );
+		assertEquals( "abab", USStringUtilities.replace( "abab", "", "x", new StringBuilder() ).toString() );
+	}
+
+	@Test
+	public void replaceAndRemoveCharacters() {
+		assertEquals( "a_b_c", USStringUtilities.replace( "a b c", ' ', '_' ) );
+		assertEquals( null, USStringUtilities.replace( null, ' ', '_' ) );
+		assertEquals( "1234567", USStringUtilities.remove( "-123 45-67 ", ' ', '-' ) );
+		assertEquals( "", USStringUtilities.remove( "---", '-' ) );
+		assertEquals( null, USStringUtilities.remove( null, '-' ) );
+
+		String unchanged = "1234567";
+		assertSame( unchanged, USStringUtilities.remove( unchanged, ' ', '-' ) );
 	}
 
 	@Test
@@ -204,6 +323,15 @@ public class TestUSStringUtilities {
 	@Test
 	public void replaceIcelandicCharsAndRemoveSpaces() {
 		assertEquals( USStringUtilities.replaceIcelandicCharsAndRemoveSpaces( " ÖÉÝÚÍÓÐÁÆÞöéýúíóðáæþ" ), "OEYUIODAAETHoeyuiodaaeth" );
+		assertEquals( "AAeeOoUussNc", USStringUtilities.replaceIcelandicCharsAndRemoveSpaces( "ÄÅ\tèë Øø\nÜü\u00A0ßÑç" ) );
+		assertEquals( null, USStringUtilities.replaceIcelandicCharsAndRemoveSpaces( null ) );
+
+		String unchanged = "Hugi-Thordarson";
+		assertSame( unchanged, USStringUtilities.replaceIcelandicCharsAndRemoveSpaces( unchanged ) );
+
+		StringBuilder b = new StringBuilder( "> " );
+		USStringUtilities.replaceIcelandicCharsAndRemoveSpaces( new StringBuilder( "Þór Ða" ), b );
+		assertEquals( "> THorDa", b.toString() );
 	}
 
 	@Test
@@ -250,6 +378,8 @@ public class TestUSStringUtilities {
 		assertEquals( USStringUtilities.stringWithFormat( "...{}{}{}.{}.", new Object[] { new Integer( 1 ), "2", 3, "4" } ), "...123.4." );
 		assertEquals( USStringUtilities.stringWithFormat( "{}", new Object[] { "testString" } ), "testString" );
 		assertEquals( USStringUtilities.stringWithFormat( "", new Object[] { "testString" } ), "" );
+		assertEquals( "1 $2 \\3 {} null {}", USStringUtilities.stringWithFormat( "{} {} {} {} {} {}", 1, "$2", "\\3", "{}", null ) );
+		assertEquals( null, USStringUtilities.stringWithFormat( null, "a" ) );
 	}
 
 	@Test
@@ -372,6 +502,38 @@ public class TestUSStringUtilities {
 		assertEquals( USStringUtilities.formatDouble( 1000.0001, 4, true ), "1.000,0001" );
 	}
 
+	@Test
+	public void formatDoubleMatchesDecimalFormat() {
+		double[] numbers = { 0, 0.5, -0.5, 0.004, 1.005, -1234.5678, 999999.999, 1e20, Double.NaN, Double.NEGATIVE_INFINITY };
+
+		for( double number : numbers ) {
+			for( int min = 0; min < 4; min++ ) {
+				for( int max = 0; max < 4; max++ ) {
+					for( boolean force : new boolean[] { false, true } ) {
+						DecimalFormat fmt = new DecimalFormat( "#,###.000", new DecimalFormatSymbols( new Locale( "is" ) ) );
+						fmt.setMinimumFractionDigits( force ? max : min );
+						fmt.setMaximumFractionDigits( max );
+						String expected = fmt.format( number );
+
+						if( expected.startsWith( "," ) ) {
+							expected = "0" + expected;
+						}
+
+						assertEquals( expected, USStringUtilities.formatDouble( number, min, max, force ) );
+						assertEquals( "> " + expected, USStringUtilities.formatDouble( new StringBuilder( "> " ), number, min, max, force ).toString() );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void formatBytesToBuilder() {
+		StringBuilder b = new StringBuilder( "Stærð: " );
+		USStringUtilities.formatBytes( b, 1025, 2, 4, " ", true );
+		assertEquals( "Stærð: 1,001 kilobytes", b.toString() );
+	}
+
 	@Test
 	public void cleanupPreRegistrationNumber() {
 		assertEquals( USStringUtilities.cleanupPreRegistrationNumber( "123asd" ), "123ASD" );
@@ -395,6 +557,33 @@ public class TestUSStringUtilities {
 		assertEquals( USStringUtilities.escapeHTML( "&ouml;ll l&iacute;fsins g&aelig;&eth;i" ), "&amp;ouml;ll l&amp;iacute;fsins g&amp;aelig;&amp;eth;i" );
 		assertEquals( USStringUtilities.escapeHTML( "" ), "" );
 		assertEquals( USStringUtilities.escapeHTML( null ), "" );
+		assertEquals( USStringUtilities.escapeHTML( "a < b > c €" ), "a &lt; b &gt; c &#x20ac;" );
+		assertEquals( USStringUtilities.escapeHTML( 42 ), "42" );
+	}
+
+	@Test
+	public void escapeAndUnescapeHTMLReturnUnchangedStrings() {
+		String s = "nothing to escape here";
+		assertSame( s, USStringUtilities.escapeHTML( s ) );
+		assertSame( s, USStringUtilities.unescapeHTML( s ) );
+
+		s = "an unknown &entity; and an unterminated &amp";
+		assertSame( s, USStringUtilities.unescapeHTML( s ) );
+	}
+
+	@Test
+	public void unescapeHTMLAllEscapedCharacters() {
+		for( Integer c : USStringUtilities.escapeChart.keySet() ) {
+			String s = String.valueOf( (char)c.intValue() );
+			assertEquals( "x" + s + "y", USStringUtilities.unescapeHTML( "x" + USStringUtilities.escapeChart.get( c )[2] + "y" ) );
+			assertEquals( s, USStringUtilities.unescapeHTML( USStringUtilities.escapeHTML( s ) ) );
+		}
+	}
+
+	@Test
+	public void unescapeHTMLNamedAndNumericReferences() {
+		assertEquals( "α → β", USStringUtilities.unescapeHTML( "&alpha; &rarr; &beta;" ) );
+		assertEquals( "áá", USStringUtilities.unescapeHTML( "&#225;&#xE1;" ) );
 	}
 
 	@Test